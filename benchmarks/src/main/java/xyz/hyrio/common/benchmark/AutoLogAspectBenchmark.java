@@ -0,0 +1,51 @@
+package xyz.hyrio.common.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import xyz.hyrio.common.components.AutoLog;
+import xyz.hyrio.common.components.AutoLogAspect;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link AutoLogAspect} around a trivial method while its log level (DEBUG) is disabled,
+ * compared with calling the method directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoLogAspectBenchmark {
+    public static class Service {
+        @AutoLog
+        public int add(int a, String b) {
+            return a + b.length();
+        }
+    }
+
+    private Service direct;
+    private Service proxied;
+    private int a = 1;
+    private String b = "hello";
+
+    @Setup
+    public void setup() {
+        direct = new Service();
+        AspectJProxyFactory factory = new AspectJProxyFactory(new Service());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new AutoLogAspect());
+        proxied = factory.getProxy();
+    }
+
+    @Benchmark
+    public int direct() {
+        return direct.add(a, b);
+    }
+
+    @Benchmark
+    public int withAspect() {
+        return proxied.add(a, b);
+    }
+}
@@ -0,0 +1,52 @@
+package xyz.hyrio.common.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.hyrio.common.tool.Digester;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigesterBenchmark {
+    @Param({"MD5", "SHA1", "SHA256", "CRC32", "CRC32C", "XXHASH64", "MURMUR3_128"})
+    public Digester.Algorithm algorithm;
+
+    @Param({"16", "1024", "65536", "1048576"})
+    public int size;
+
+    private byte[] data;
+    private String text;
+    private final char[] hex = new char[64];
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+        text = "cache-key:" + "x".repeat(Math.max(0, Math.min(size, 4096) - 10));
+    }
+
+    @Benchmark
+    public String instance() {
+        return new Digester(algorithm).update(data).getHex(algorithm);
+    }
+
+    @Benchmark
+    public byte[] staticBytes() {
+        return Digester.digest(algorithm, data);
+    }
+
+    @Benchmark
+    public int staticHexIntoBuffer() {
+        return Digester.digestToHex(algorithm, data, 0, data.length, hex, 0);
+    }
+
+    @Benchmark
+    public int staticStringHexIntoBuffer() {
+        return Digester.digestToHex(algorithm, text, hex, 0);
+    }
+}
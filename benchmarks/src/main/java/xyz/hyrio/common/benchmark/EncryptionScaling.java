@@ -0,0 +1,52 @@
+package xyz.hyrio.common.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs {@link EncryptionToolBenchmark} with 1, 2, 4, ... threads up to the number of cores
+ * and prints the speedup over one thread, together with the efficiency (speedup / threads).
+ * Efficiency close to 1 means the shared {@link xyz.hyrio.common.tool.EncryptionTool} does not serialize callers.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar xyz.hyrio.common.benchmark.EncryptionScaling
+ * </pre>
+ */
+public final class EncryptionScaling {
+    private EncryptionScaling() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads <<= 1) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+
+        for (String method : new String[]{"encrypt", "decrypt"}) {
+            double single = 0;
+            System.out.printf("%n%-8s %8s %14s %8s %10s%n", "method", "threads", "ops/ms", "speedup", "efficiency");
+            for (int threads : threadCounts) {
+                RunResult result = new Runner(new OptionsBuilder()
+                        .include(EncryptionToolBenchmark.class.getName() + "\\." + method + "$")
+                        .threads(threads)
+                        .verbosity(VerboseMode.SILENT)
+                        .build()
+                ).runSingle();
+                double score = result.getPrimaryResult().getScore();
+                if (threads == 1) {
+                    single = score;
+                }
+                double speedup = score / single;
+                System.out.printf("%-8s %8d %14.1f %8.2f %10.2f%n", method, threads, score, speedup, speedup / threads);
+            }
+        }
+    }
+}
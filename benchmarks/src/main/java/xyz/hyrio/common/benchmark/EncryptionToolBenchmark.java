@@ -0,0 +1,79 @@
+package xyz.hyrio.common.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.hyrio.common.tool.EncryptionTool;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link EncryptionTool} shared by all benchmark threads, the way a service uses it.
+ * Run with {@code -t N} to see how throughput scales with threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptionToolBenchmark {
+    static final String KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY="; // 32 bytes
+    static final String KEY_2 = "ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA="; // 32 bytes
+    static final String PLAINTEXT = "{\"userId\":12345,\"username\":\"benchmark-user\",\"roles\":[\"admin\",\"user\"]}";
+
+    private EncryptionTool encryptionTool;
+    private String ciphertext;
+
+    @State(Scope.Thread)
+    public static class Buffers {
+        final ByteBuffer plaintext = ByteBuffer.wrap(PLAINTEXT.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer ciphertext, decrypted;
+
+        @Setup
+        public void setup(EncryptionToolBenchmark benchmark) {
+            ciphertext = ByteBuffer.allocateDirect(benchmark.encryptionTool.getEncryptedSize(plaintext.capacity()));
+            decrypted = ByteBuffer.allocateDirect(ciphertext.capacity());
+        }
+    }
+
+    private EncryptionTool keyRingTool;
+    private String previousKeyCiphertext;
+
+    @Setup
+    public void setup() {
+        encryptionTool = new EncryptionTool(KEY);
+        ciphertext = encryptionTool.encryptToString(PLAINTEXT);
+
+        // A rotated key ring: the ciphertext was produced with key 1 before key 2 became primary
+        keyRingTool = new EncryptionTool(new EncryptionTool.KeyRing(1, Map.of(1, KEY)));
+        previousKeyCiphertext = keyRingTool.encryptToString(PLAINTEXT);
+        keyRingTool.setKeyRing(new EncryptionTool.KeyRing(2, Map.of(1, KEY, 2, KEY_2)));
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionTool.encryptToString(PLAINTEXT);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionTool.decryptToString(ciphertext);
+    }
+
+    @Benchmark
+    public String decryptWithPreviousKey() {
+        return keyRingTool.decryptToString(previousKeyCiphertext);
+    }
+
+    @Benchmark
+    public int encryptDecryptByteBuffer(Buffers buffers) {
+        buffers.plaintext.clear();
+        buffers.ciphertext.clear();
+        buffers.decrypted.clear();
+        encryptionTool.encrypt(buffers.plaintext, buffers.ciphertext);
+        buffers.ciphertext.flip();
+        return encryptionTool.decrypt(buffers.ciphertext, buffers.decrypted);
+    }
+}
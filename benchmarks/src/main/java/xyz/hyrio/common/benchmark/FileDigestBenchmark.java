@@ -0,0 +1,64 @@
+package xyz.hyrio.common.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.hyrio.common.tool.Digester;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-pass parallel file digesting versus feeding the four default algorithms one after another.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileDigestBenchmark {
+    @Param({"256"})
+    public int sizeMb;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("digest-benchmark", ".bin");
+        byte[] block = new byte[1024 * 1024];
+        Random random = new Random(42);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < sizeMb; i++) {
+                random.nextBytes(block);
+                channel.write(ByteBuffer.wrap(block));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String digestFile() throws IOException {
+        return Digester.digestFile(file).getSHA256();
+    }
+
+    @Benchmark
+    public String sequential() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Digester digester = new Digester();
+            long size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                digester.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Integer.MAX_VALUE, size - position)));
+            }
+            return digester.getSHA256();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package xyz.hyrio.common.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.hyrio.common.tool.LatencyRecorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording path of {@link LatencyRecorder} as called by {@code ShowRequestInterceptor} for every request;
+ * run with {@code -prof gc} to check that it does not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyRecorderBenchmark {
+    private static final String[] ROUTES = {"/api/users/{id}", "/api/orders", "/api/files/{id}/preview", "/api/login"};
+
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder(100);
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int i;
+    }
+
+    @Benchmark
+    public void record(Cursor cursor) {
+        int i = cursor.i++;
+        latencyRecorder.record("GET", ROUTES[i & 3], 1_000_000L + (i & 0xFFFF) * 100L, (i & 0xFF) == 0 ? 500 : 200);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended(Cursor cursor) {
+        record(cursor);
+    }
+}
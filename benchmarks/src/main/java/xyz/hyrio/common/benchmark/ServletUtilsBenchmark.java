@@ -0,0 +1,69 @@
+package xyz.hyrio.common.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.hyrio.common.tool.RouteMatcher;
+import xyz.hyrio.common.util.ServletUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skip-list matching as done by {@code AuthCheckInterceptor} and {@code ShowRequestInterceptor} on every request,
+ * with {@link ServletUtils#isUriIn(String, String, String[][])} and with a precompiled {@link RouteMatcher}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServletUtilsBenchmark {
+    static final String[][] SKIP_URIS = skipUris();
+    static final RouteMatcher SKIP_URIS_MATCHER = new RouteMatcher(SKIP_URIS);
+
+    static String[][] skipUris() {
+        String[][] ret = new String[40][];
+        for (int i = 0; i < 36; i++) {
+            ret[i] = new String[]{i % 2 == 0 ? "GET" : "POST", "/api/public/resource" + i};
+        }
+        ret[36] = new String[]{"GET", "/swagger-ui/.*"};
+        ret[37] = new String[]{"GET", "/v3/api-docs.*"};
+        ret[38] = new String[]{"GET", "/api/files/\\d+/preview"};
+        ret[39] = new String[]{"POST", "/api/login"};
+        return ret;
+    }
+
+    @Benchmark
+    public boolean literalHit() {
+        return ServletUtils.isUriIn("POST", "/api/login", SKIP_URIS);
+    }
+
+    @Benchmark
+    public boolean regexHit() {
+        return ServletUtils.isUriIn("GET", "/api/files/123/preview", SKIP_URIS);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return ServletUtils.isUriIn("GET", "/api/users/42/profile", SKIP_URIS);
+    }
+
+    @Benchmark
+    public boolean literalHitCompiled() {
+        return SKIP_URIS_MATCHER.matches("POST", "/api/login");
+    }
+
+    @Benchmark
+    public boolean prefixHitCompiled() {
+        return SKIP_URIS_MATCHER.matches("GET", "/swagger-ui/index.html");
+    }
+
+    @Benchmark
+    public boolean regexHitCompiled() {
+        return SKIP_URIS_MATCHER.matches("GET", "/api/files/123/preview");
+    }
+
+    @Benchmark
+    public boolean missCompiled() {
+        return SKIP_URIS_MATCHER.matches("GET", "/api/users/42/profile");
+    }
+}
@@ -0,0 +1,22 @@
+package xyz.hyrio.common.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.hyrio.common.tool.SqlOrderParams;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlOrderParamsBenchmark {
+    private static final String[] AVAILABLE_FIELDS = {"name", "age", "createTime", "updateTime", "moduleId:c.module_id"};
+
+    @Benchmark
+    public List<SqlOrderParams> parseOrderParams() {
+        return SqlOrderParams.parseOrderParams("name-, age+, createTime, moduleId-", AVAILABLE_FIELDS);
+    }
+}
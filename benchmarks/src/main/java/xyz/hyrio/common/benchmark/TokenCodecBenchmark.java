@@ -0,0 +1,52 @@
+package xyz.hyrio.common.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import xyz.hyrio.common.tool.EncryptionTool;
+import xyz.hyrio.common.tool.TokenCodec;
+import xyz.hyrio.common.tool.TokenTool;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON vs. Smile token encoding, both encrypted with the same key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenCodecBenchmark {
+    @Param({"json", "smile"})
+    public String codec;
+
+    private TokenTool tokenTool;
+    private TokenToolBenchmark.UserInfo userInfo;
+    private String token;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        TokenCodec tokenCodec = "smile".equals(codec) ? TokenCodec.smile(objectMapper) : TokenCodec.json(objectMapper);
+        tokenTool = new TokenTool(tokenCodec, new EncryptionTool(EncryptionToolBenchmark.KEY), "Bearer ", null);
+        userInfo = new TokenToolBenchmark.UserInfo();
+        userInfo.userId = 12345;
+        userInfo.username = "benchmark-user";
+        userInfo.roles = List.of("admin", "user");
+        userInfo.loginTime = 1700000000000L;
+        token = tokenTool.generate(userInfo);
+    }
+
+    @Benchmark
+    public String generate() throws JsonProcessingException {
+        return tokenTool.generate(userInfo);
+    }
+
+    @Benchmark
+    public TokenToolBenchmark.UserInfo parse() {
+        return tokenTool.parse(token, TokenToolBenchmark.UserInfo.class);
+    }
+}
@@ -0,0 +1,91 @@
+package xyz.hyrio.common.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import xyz.hyrio.common.exception.request.AuthorizationException;
+import xyz.hyrio.common.tool.EncryptionTool;
+import xyz.hyrio.common.tool.TokenCache;
+import xyz.hyrio.common.tool.TokenCodec;
+import xyz.hyrio.common.tool.TokenTool;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenToolBenchmark {
+    public static class UserInfo {
+        public long userId;
+        public String username;
+        public List<String> roles;
+        public long loginTime;
+    }
+
+    static final String MAC_KEY = "bWFjLWtleS1tYWMta2V5LW1hYy1rZXk="; // 24 bytes
+
+    private TokenTool tokenTool, cachedTokenTool, expiringTokenTool;
+    private String forgedToken, garbageToken;
+    private UserInfo userInfo;
+    private String token;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        tokenTool = new TokenTool(new ObjectMapper(), new EncryptionTool(EncryptionToolBenchmark.KEY), "Bearer ");
+        userInfo = new UserInfo();
+        userInfo.userId = 12345;
+        userInfo.username = "benchmark-user";
+        userInfo.roles = List.of("admin", "user");
+        userInfo.loginTime = 1700000000000L;
+        token = tokenTool.generate(userInfo);
+        cachedTokenTool = new TokenTool(new ObjectMapper(), new EncryptionTool(EncryptionToolBenchmark.KEY), "Bearer ",
+                new TokenCache(10_000, Duration.ofHours(1), Duration.ofMinutes(30)));
+
+        // A valid header whose MAC does not match the ciphertext: rejected without decrypting
+        expiringTokenTool = new TokenTool(TokenCodec.json(new ObjectMapper()), new EncryptionTool(EncryptionToolBenchmark.KEY), "Bearer ", null,
+                new TokenTool.ExpiryPolicy(MAC_KEY, Duration.ofHours(1), Duration.ofMinutes(10), Duration.ofDays(7), false));
+        String expiringToken = expiringTokenTool.generate(userInfo);
+        int separator = expiringToken.indexOf('.');
+        // Without an expiry header the same kind of garbage is only rejected when decryption fails
+        garbageToken = new TokenTool(new ObjectMapper(), new EncryptionTool(EncryptionToolBenchmark.KEY_2), "Bearer ").generate(userInfo);
+        forgedToken = expiringToken.substring(0, separator + 1) + expiringTokenTool.generate(new UserInfo()).substring(separator + 1);
+    }
+
+    @Benchmark
+    public String generate() throws JsonProcessingException {
+        return tokenTool.generate(userInfo);
+    }
+
+    @Benchmark
+    public UserInfo parse() {
+        return tokenTool.parse(token, UserInfo.class);
+    }
+
+    @Benchmark
+    public UserInfo parseCached() {
+        return cachedTokenTool.parse(token, UserInfo.class);
+    }
+
+    @Benchmark
+    public Object rejectGarbage() {
+        try {
+            return tokenTool.parse(garbageToken, UserInfo.class);
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object rejectForged() {
+        try {
+            return expiringTokenTool.parse(forgedToken, UserInfo.class);
+        } catch (AuthorizationException e) {
+            return e;
+        }
+    }
+}
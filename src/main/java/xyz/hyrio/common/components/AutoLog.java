@@ -15,4 +15,10 @@ import java.lang.annotation.*;
 @Documented
 public @interface AutoLog {
     Level level() default Level.DEBUG;
+
+    /**
+     * 不为空时，把方法的耗时以该名称记录到当前请求（见 {@link xyz.hyrio.common.tool.RequestContext#recordSpan(String, long)}），
+     * 输出到请求日志和 {@code Server-Timing} 响应头。
+     */
+    String span() default "";
 }
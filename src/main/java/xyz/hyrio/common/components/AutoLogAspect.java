@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.event.Level;
 import org.springframework.stereotype.Component;
+import xyz.hyrio.common.tool.RequestContext;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -42,14 +43,27 @@ public class AutoLogAspect {
             parameters.add(parameterNames[i] + "=" + parameterValues[i]);
         }
 
-        Level level = methodSignature.getMethod().getAnnotation(AutoLog.class).level();
+        AutoLog autoLog = methodSignature.getMethod().getAnnotation(AutoLog.class);
+        Level level = autoLog.level();
+        String span = autoLog.span();
+        long startNanos = System.nanoTime();
+        Object ret;
         try {
-            Object ret = pjp.proceed();
-            log.atLevel(level).log("{} => args: {}; ret: {}", methodName, parameters, ret);
-            return ret;
+            ret = pjp.proceed();
         } catch (Throwable t) {
+            recordSpan(span, startNanos);
             log.atLevel(level).log("{} => args: {}. An error occurred.", methodName, parameters, t);
             throw t;
         }
+        recordSpan(span, startNanos);
+        log.atLevel(level).log("{} => args: {}; ret: {}", methodName, parameters, ret);
+        return ret;
+    }
+
+    // Recorded before logging, so the span does not include formatting the arguments and the return value.
+    private static void recordSpan(String span, long startNanos) {
+        if (!span.isEmpty()) {
+            RequestContext.recordSpan(span, startNanos);
+        }
     }
 }
@@ -0,0 +1,30 @@
+package xyz.hyrio.common.components;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import xyz.hyrio.common.pojo.vo.CommonVo;
+import xyz.hyrio.common.tool.LatencyRecorder;
+
+import java.util.List;
+
+/**
+ * Exposes the {@link LatencyRecorder} bean, for example {@code GET /_latency?reset=true}.
+ * Enabled by {@code latency.endpoint.enabled=true}; the path is {@code latency.endpoint.path}.
+ * Protect it like any other internal endpoint (e.g. leave it out of {@code skipAuthCheckUris}).
+ */
+@RestController
+@ConditionalOnExpression("${latency.endpoint.enabled:false}")
+public class LatencyController {
+    private final LatencyRecorder latencyRecorder;
+
+    public LatencyController(LatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    @GetMapping("${latency.endpoint.path:/_latency}")
+    public CommonVo<List<LatencyRecorder.RouteSnapshot>> latency(@RequestParam(defaultValue = "false") boolean reset) {
+        return CommonVo.success(latencyRecorder.snapshot(reset));
+    }
+}
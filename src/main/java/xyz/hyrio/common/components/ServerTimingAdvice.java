@@ -0,0 +1,36 @@
+package xyz.hyrio.common.components;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import xyz.hyrio.common.interceptor.ServerTimingInterceptor;
+import xyz.hyrio.common.tool.RequestContext;
+
+/**
+ * Ends the {@code handler} phase right before a {@code @ResponseBody} (including one returned by an {@code @ExceptionHandler})
+ * is serialized, and sets the {@code Server-Timing} header while it can still be sent.
+ * Does nothing unless {@link ServerTimingInterceptor} is registered.
+ */
+@ControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestContext context = RequestContext.current();
+        if (context != null && context.getPhase() != null) {
+            context.beginPhase(ServerTimingInterceptor.SERIALIZE_PHASE);
+            response.getHeaders().set(ServerTimingInterceptor.HEADER, ServerTimingInterceptor.getServerTiming(context));
+        }
+        return body;
+    }
+}
@@ -22,6 +22,7 @@ public class AsyncConfig implements AsyncConfigurer {
         threadPool.setWaitForTasksToCompleteOnShutdown(true);
         threadPool.setAwaitTerminationSeconds(60);
         threadPool.setThreadNamePrefix("async-");
+        threadPool.setTaskDecorator(new RequestContextTaskDecorator());
         threadPool.initialize();
         return threadPool;
     }
@@ -0,0 +1,14 @@
+package xyz.hyrio.common.config;
+
+import org.springframework.core.task.TaskDecorator;
+import xyz.hyrio.common.tool.RequestContext;
+
+/**
+ * 将提交任务时的 {@link RequestContext} 带到执行任务的线程，使 {@code @Async} 方法中也能获取请求 IP 等信息。
+ */
+public class RequestContextTaskDecorator implements TaskDecorator {
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return RequestContext.wrap(runnable);
+    }
+}
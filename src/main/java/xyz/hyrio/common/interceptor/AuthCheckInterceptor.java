@@ -6,33 +6,53 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.servlet.HandlerInterceptor;
 import xyz.hyrio.common.exception.request.AuthorizationException;
+import xyz.hyrio.common.tool.RequestContext;
+import xyz.hyrio.common.tool.RouteMatcher;
 
 import static xyz.hyrio.common.util.ObjectUtils.blank2NullOtherwiseStrip;
 import static xyz.hyrio.common.util.ObjectUtils.requireHasTextElse;
-import static xyz.hyrio.common.util.ServletUtils.isUriIn;
 
 public class AuthCheckInterceptor implements HandlerInterceptor {
     private static final Logger log = LoggerFactory.getLogger(AuthCheckInterceptor.class);
 
     public static final String DEFAULT_TOKEN_HEADER_KEY = "token";
+    public static final String AUTH_SPAN = "auth";
 
+    /**
+     * Implementations may break down their own time with {@link RequestContext#recordSpan(String, long)};
+     * the whole check is recorded as {@link #AUTH_SPAN}.
+     */
     public interface TokenValidator {
         void checkAndSaveUserInfo(String token) throws Exception;
 
         void clearStates();
     }
 
-    private String[][] skipAuthCheckUris;
+    /**
+     * Checked before {@link TokenValidator}, so revoked tokens are rejected without being parsed.
+     * Called on every authenticated request, implementations must not do I/O here.
+     */
+    @FunctionalInterface
+    public interface RevocationChecker {
+        boolean isRevoked(String token);
+    }
+
+    private RouteMatcher skipAuthCheckUris = RouteMatcher.EMPTY;
     private String tokenKey = DEFAULT_TOKEN_HEADER_KEY;
 
+    private RevocationChecker revocationChecker;
+
     private final TokenValidator tokenValidator;
 
     public String[][] getSkipAuthCheckUris() {
-        return skipAuthCheckUris;
+        return skipAuthCheckUris.getRules();
     }
 
+    /**
+     * @param skipAuthCheckUris each element is {@code {method, regex}}, compiled into a {@link RouteMatcher} here.
+     */
     public void setSkipAuthCheckUris(String[][] skipAuthCheckUris) {
-        this.skipAuthCheckUris = skipAuthCheckUris;
+        this.skipAuthCheckUris = new RouteMatcher(skipAuthCheckUris);
     }
 
     public String getTokenKey() {
@@ -43,6 +63,14 @@ public class AuthCheckInterceptor implements HandlerInterceptor {
         this.tokenKey = tokenKey;
     }
 
+    public RevocationChecker getRevocationChecker() {
+        return revocationChecker;
+    }
+
+    public void setRevocationChecker(RevocationChecker revocationChecker) {
+        this.revocationChecker = revocationChecker;
+    }
+
     public AuthCheckInterceptor(TokenValidator tokenValidator) {
         this.tokenValidator = tokenValidator;
     }
@@ -51,15 +79,27 @@ public class AuthCheckInterceptor implements HandlerInterceptor {
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
         String requestMethod = request.getMethod();
         String requestURI = request.getRequestURI();
-        if (isUriIn(requestMethod, requestURI, skipAuthCheckUris)) return true;
+        if (skipAuthCheckUris.matches(requestMethod, requestURI)) return true;
 
         String token = requireHasTextElse(
                 blank2NullOtherwiseStrip(request.getParameter(tokenKey)),
                 blank2NullOtherwiseStrip(request.getHeader(tokenKey))
         );
+        long startNanos = System.nanoTime();
         try {
-            tokenValidator.checkAndSaveUserInfo(token);
+            checkToken(token);
             return true;
+        } finally {
+            RequestContext.recordSpan(AUTH_SPAN, startNanos);
+        }
+    }
+
+    private void checkToken(String token) {
+        if (revocationChecker != null && revocationChecker.isRevoked(token)) {
+            throw new AuthorizationException("token is revoked");
+        }
+        try {
+            tokenValidator.checkAndSaveUserInfo(token);
         } catch (Exception e) {
             throw new AuthorizationException("token is invalid (" + e.getMessage() + ")", e);
         }
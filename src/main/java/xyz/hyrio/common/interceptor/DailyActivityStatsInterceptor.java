@@ -7,6 +7,10 @@ import org.springframework.web.servlet.HandlerInterceptor;
 import static xyz.hyrio.common.interceptor.ShowRequestInterceptor.getRequestIpAddress;
 
 public class DailyActivityStatsInterceptor implements HandlerInterceptor {
+    /**
+     * Called on the request thread for every request. {@link xyz.hyrio.common.tool.ActivityStatsRecorder} counts in memory
+     * and writes in batches, so no I/O happens per request.
+     */
     @FunctionalInterface
     public interface AccessRecorder {
         void recordAccess(String ipAddress);
@@ -0,0 +1,216 @@
+package xyz.hyrio.common.interceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import xyz.hyrio.common.exception.request.RateLimitException;
+import xyz.hyrio.common.tool.LatencyRecorder;
+import xyz.hyrio.common.tool.RouteMatcher;
+import xyz.hyrio.common.tool.TokenBucket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static xyz.hyrio.common.util.ServletUtils.getIpAddressFromRequest;
+
+/**
+ * Rejects requests over a per-key rate with {@link RateLimitException} (429) and a {@code Retry-After} header,
+ * before the handler runs. Each key (client IP, user or route, see {@link KeyResolver}) has its own lock-free {@link TokenBucket};
+ * routes with their own limit ({@link #setRouteLimits(Map)}) have separate buckets.
+ * <p>
+ * At most {@code maximumKeys} buckets are kept per limit. When the map is full, idle buckets (refilled, so identical to new ones)
+ * are evicted, at most once a second; if it is still full, new keys share one overflow bucket, so a flood of distinct keys
+ * (e.g. spoofed {@code X-Forwarded-For}) cannot grow memory or bypass the limit. The overflow bucket allows
+ * {@code overflowFactor} times the per-key rate and burst, so legitimate new clients are not starved by such a flood
+ * until it exceeds that many clients' worth of traffic.
+ * <p>
+ * Register it right after {@link ShowRequestInterceptor}, so rejected requests cost no token validation;
+ * when keyed by user, register it after {@link AuthCheckInterceptor}.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+    public static final int DEFAULT_MAXIMUM_KEYS = 100_000;
+    public static final int DEFAULT_OVERFLOW_FACTOR = 100;
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * @param permitsPerSecond sustained rate.
+     * @param burst            requests allowed at once after being idle.
+     */
+    public record Limit(double permitsPerSecond, int burst) {
+        public Limit {
+            if (!(permitsPerSecond > 0) || burst <= 0) {
+                throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+            }
+        }
+    }
+
+    /**
+     * Returns the key a request is counted against; requests with a {@code null} key share one bucket at the per-key rate.
+     */
+    @FunctionalInterface
+    public interface KeyResolver {
+        String resolve(HttpServletRequest request);
+    }
+
+    /**
+     * Limits each client IP.
+     */
+    public static KeyResolver byIp() {
+        return request -> getIpAddressFromRequest(request);
+    }
+
+    /**
+     * Limits each user, and anonymous requests by client IP.
+     */
+    public static KeyResolver byUser(Supplier<String> currentUsernameSupplier) {
+        return request -> {
+            String username = currentUsernameSupplier.get();
+            return username != null ? "user:" + username : "ip:" + getIpAddressFromRequest(request);
+        };
+    }
+
+    /**
+     * Limits each route as a whole, across clients.
+     */
+    public static KeyResolver byRoute() {
+        return request -> {
+            String route = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            return route != null ? route : LatencyRecorder.UNMATCHED_ROUTE;
+        };
+    }
+
+    private final class Limiter {
+        private final Limit limit;
+        private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final TokenBucket nullKey;
+        private final TokenBucket overflow;
+        private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime());
+
+        private Limiter(Limit limit) {
+            this.limit = limit;
+            this.nullKey = newBucket();
+            this.overflow = new TokenBucket(limit.permitsPerSecond() * overflowFactor, (int) Math.min(Integer.MAX_VALUE, (long) limit.burst() * overflowFactor));
+        }
+
+        private TokenBucket newBucket() {
+            return new TokenBucket(limit.permitsPerSecond(), limit.burst());
+        }
+
+        private TokenBucket bucket(String key, long nowNanos) {
+            if (key == null) {
+                return nullKey;
+            }
+            TokenBucket bucket = buckets.get(key);
+            if (bucket != null) {
+                return bucket;
+            }
+            if (buckets.size() >= maximumKeys) {
+                sweep(nowNanos);
+                if (buckets.size() >= maximumKeys) {
+                    return overflow;
+                }
+            }
+            return buckets.computeIfAbsent(key, k -> newBucket());
+        }
+
+        /**
+         * Evicts idle buckets, by one thread at a time and at most once per {@link #SWEEP_INTERVAL_NANOS}.
+         */
+        private void sweep(long nowNanos) {
+            long last = lastSweepNanos.get();
+            if (nowNanos - last < SWEEP_INTERVAL_NANOS || !lastSweepNanos.compareAndSet(last, nowNanos)) {
+                return;
+            }
+            buckets.values().removeIf(bucket -> bucket.isIdle(nowNanos));
+        }
+    }
+
+    private final KeyResolver keyResolver;
+    private final int maximumKeys;
+    private final int overflowFactor;
+    private final Limiter defaultLimiter;
+    private Map<String, Limiter> routeLimiters = Map.of();
+    private RouteMatcher skipRateLimitUris = RouteMatcher.EMPTY;
+
+    public RateLimitInterceptor(Limit defaultLimit, KeyResolver keyResolver) {
+        this(defaultLimit, keyResolver, DEFAULT_MAXIMUM_KEYS, DEFAULT_OVERFLOW_FACTOR);
+    }
+
+    public RateLimitInterceptor(Limit defaultLimit, KeyResolver keyResolver, int maximumKeys) {
+        this(defaultLimit, keyResolver, maximumKeys, DEFAULT_OVERFLOW_FACTOR);
+    }
+
+    /**
+     * @param defaultLimit   limit of routes without their own.
+     * @param maximumKeys    maximum number of buckets kept per limit.
+     * @param overflowFactor how many keys' worth of rate and burst the keys that do not fit share.
+     */
+    public RateLimitInterceptor(Limit defaultLimit, KeyResolver keyResolver, int maximumKeys, int overflowFactor) {
+        if (maximumKeys <= 0 || overflowFactor <= 0) {
+            throw new IllegalArgumentException("maximumKeys and overflowFactor must be positive");
+        }
+        this.keyResolver = keyResolver;
+        this.maximumKeys = maximumKeys;
+        this.overflowFactor = overflowFactor;
+        this.defaultLimiter = new Limiter(defaultLimit);
+    }
+
+    public Limit getDefaultLimit() {
+        return defaultLimiter.limit;
+    }
+
+    public Map<String, Limit> getRouteLimits() {
+        Map<String, Limit> ret = new HashMap<>();
+        routeLimiters.forEach((route, limiter) -> ret.put(route, limiter.limit));
+        return ret;
+    }
+
+    /**
+     * @param routeLimits keyed by route template ({@link HandlerMapping#BEST_MATCHING_PATTERN_ATTRIBUTE}), e.g. {@code /user/{id}};
+     *                    each route counts separately from the others.
+     */
+    public void setRouteLimits(Map<String, Limit> routeLimits) {
+        Map<String, Limiter> limiters = new HashMap<>();
+        routeLimits.forEach((route, limit) -> limiters.put(route, new Limiter(limit)));
+        this.routeLimiters = Map.copyOf(limiters);
+    }
+
+    public String[][] getSkipRateLimitUris() {
+        return skipRateLimitUris.getRules();
+    }
+
+    /**
+     * @param skipRateLimitUris each element is {@code {method, regex}}, compiled into a {@link RouteMatcher} here.
+     */
+    public void setSkipRateLimitUris(String[][] skipRateLimitUris) {
+        this.skipRateLimitUris = new RouteMatcher(skipRateLimitUris);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (skipRateLimitUris.matches(request.getMethod(), request.getRequestURI())) return true;
+
+        Limiter limiter = defaultLimiter;
+        if (!routeLimiters.isEmpty()) {
+            String route = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (route != null) {
+                limiter = routeLimiters.getOrDefault(route, defaultLimiter);
+            }
+        }
+        long nowNanos = System.nanoTime();
+        long waitNanos = limiter.bucket(keyResolver.resolve(request), nowNanos).tryAcquire(nowNanos);
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000);
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            throw new RateLimitException("too many requests, retry after " + retryAfterSeconds + "s");
+        }
+        return true;
+    }
+}
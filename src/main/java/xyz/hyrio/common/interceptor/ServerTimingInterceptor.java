@@ -0,0 +1,96 @@
+package xyz.hyrio.common.interceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import xyz.hyrio.common.tool.RequestContext;
+
+/**
+ * Splits each request into phases timed with {@link System#nanoTime()} and sends them, together with the spans recorded
+ * through {@link RequestContext#recordSpan(String, long)}, in a {@code Server-Timing} header:
+ * <ul>
+ *     <li>{@code chain}: from {@link ShowRequestInterceptor#preHandle} to this interceptor, i.e. the interceptors before it
+ *     ({@code auth}, recorded by {@link AuthCheckInterceptor}, is part of it);</li>
+ *     <li>{@code handler}: the handler method, including exception handling;</li>
+ *     <li>{@code serialize}: writing a {@code @ResponseBody}, or {@code render} for a view.</li>
+ * </ul>
+ * Register it after {@link ShowRequestInterceptor} and the other interceptors, so that it runs right before the handler;
+ * it only times requests that {@link ShowRequestInterceptor} began a {@link RequestContext} for.
+ * A {@code @ResponseBody} is written before {@code postHandle}, so for those the header is set by
+ * {@link xyz.hyrio.common.components.ServerTimingAdvice} and cannot contain {@code serialize}; the log line written by
+ * {@link ShowRequestInterceptor} has every phase.
+ * <p>
+ * The header reveals internal timings, only register this interceptor where that is acceptable.
+ */
+public class ServerTimingInterceptor implements HandlerInterceptor {
+    public static final String HEADER = "Server-Timing";
+    public static final String CHAIN_PHASE = "chain";
+    public static final String HANDLER_PHASE = "handler";
+    public static final String SERIALIZE_PHASE = "serialize";
+    public static final String RENDER_PHASE = "render";
+
+    private String timingAllowOrigin;
+
+    public String getTimingAllowOrigin() {
+        return timingAllowOrigin;
+    }
+
+    /**
+     * Browsers only expose {@code Server-Timing} to cross-origin pages listed in {@code Timing-Allow-Origin},
+     * e.g. {@code "*"}; {@code null} (the default) does not send it.
+     */
+    public void setTimingAllowOrigin(String timingAllowOrigin) {
+        this.timingAllowOrigin = timingAllowOrigin;
+    }
+
+    /**
+     * The {@code Server-Timing} value for the spans recorded so far, followed by {@code total} (the time since the request began).
+     */
+    public static String getServerTiming(RequestContext context) {
+        String spans = context.formatSpans();
+        StringBuilder sb = new StringBuilder(spans == null ? 24 : spans.length() + 24);
+        if (spans != null) {
+            sb.append(spans).append(", ");
+        }
+        return RequestContext.appendSpan(sb, "total", context.getElapsedNanos()).toString();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        RequestContext context = RequestContext.current();
+        if (context == null) { // ShowRequestInterceptor not registered or skipped this request
+            return true;
+        }
+        context.addSpan(CHAIN_PHASE, context.getElapsedNanos());
+        context.beginPhase(HANDLER_PHASE);
+        if (timingAllowOrigin != null) {
+            response.setHeader("Timing-Allow-Origin", timingAllowOrigin);
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        RequestContext context = RequestContext.current();
+        if (context == null) {
+            return;
+        }
+        if (modelAndView != null && !modelAndView.wasCleared()) {
+            context.beginPhase(RENDER_PHASE);
+        } else {
+            context.endPhase();
+        }
+        if (!response.isCommitted() && !response.containsHeader(HEADER)) {
+            response.setHeader(HEADER, getServerTiming(context));
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestContext context = RequestContext.current();
+        if (context != null) {
+            context.endPhase();
+        }
+    }
+}
@@ -1,21 +1,35 @@
 package xyz.hyrio.common.interceptor;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import xyz.hyrio.common.exception.request.RateLimitException;
+import xyz.hyrio.common.tool.AccessLogWriter;
+import xyz.hyrio.common.tool.LatencyRecorder;
+import xyz.hyrio.common.tool.RequestContext;
+import xyz.hyrio.common.tool.RequestLogPolicy;
+import xyz.hyrio.common.tool.RouteMatcher;
+import xyz.hyrio.common.tool.SlowRequestWatchdog;
 import xyz.hyrio.common.util.ExceptionHandlerUtils;
 
-import java.text.DecimalFormat;
-import java.util.Optional;
-
 import static xyz.hyrio.common.util.ServletUtils.*;
 
-public class ShowRequestInterceptor implements HandlerInterceptor {
+/**
+ * Logs every request when it completes. Async requests ({@code Callable}, {@code DeferredResult}) are logged once,
+ * after the async dispatch: the first dispatch hands its {@link RequestContext} and slow-request profile over in request attributes
+ * and releases the container thread.
+ */
+public class ShowRequestInterceptor implements AsyncHandlerInterceptor {
     private static final Logger log = LoggerFactory.getLogger(ShowRequestInterceptor.class);
 
+    private static final String CONTEXT_ATTRIBUTE = ShowRequestInterceptor.class.getName() + ".CONTEXT";
+    private static final String SLOW_REQUEST_PROFILE_ATTRIBUTE = ShowRequestInterceptor.class.getName() + ".SLOW_REQUEST_PROFILE";
+
     private final boolean logException;
 
     public ShowRequestInterceptor() {
@@ -26,14 +40,75 @@ public class ShowRequestInterceptor implements HandlerInterceptor {
         this.logException = logException;
     }
 
-    private String[][] skipLogRecordUris;
+    private RouteMatcher skipLogRecordUris = RouteMatcher.EMPTY;
 
     public String[][] getSkipLogRecordUris() {
-        return skipLogRecordUris;
+        return skipLogRecordUris.getRules();
     }
 
+    /**
+     * @param skipLogRecordUris each element is {@code {method, regex}}, compiled into a {@link RouteMatcher} here.
+     */
     public void setSkipLogRecordUris(String[][] skipLogRecordUris) {
-        this.skipLogRecordUris = skipLogRecordUris;
+        this.skipLogRecordUris = new RouteMatcher(skipLogRecordUris);
+    }
+
+    private AccessLogWriter accessLogWriter;
+
+    public AccessLogWriter getAccessLogWriter() {
+        return accessLogWriter;
+    }
+
+    /**
+     * Writes the access log asynchronously through the given writer; {@code null} (the default) writes it on the request thread.
+     * For example {@code new AccessLogWriter(LoggerFactory.getLogger(ShowRequestInterceptor.class), 8192, OverflowPolicy.DROP, null)},
+     * declared as a bean so that it is closed, and pending records flushed, on shutdown.
+     */
+    public void setAccessLogWriter(AccessLogWriter accessLogWriter) {
+        this.accessLogWriter = accessLogWriter;
+    }
+
+    private LatencyRecorder latencyRecorder;
+
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * Records the latency of every request, including those in {@code skipLogRecordUris},
+     * keyed by method and the matched route template ({@link HandlerMapping#BEST_MATCHING_PATTERN_ATTRIBUTE}).
+     */
+    public void setLatencyRecorder(LatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    private RequestLogPolicy requestLogPolicy;
+
+    public RequestLogPolicy getRequestLogPolicy() {
+        return requestLogPolicy;
+    }
+
+    /**
+     * Decides which requests not in {@code skipLogRecordUris} are logged (sampling, slow threshold, per-route rate limit);
+     * {@code null} (the default) logs all of them. Requests ending with an exception are always logged,
+     * except {@link RateLimitException}, which is sampled like a normal request.
+     */
+    public void setRequestLogPolicy(RequestLogPolicy requestLogPolicy) {
+        this.requestLogPolicy = requestLogPolicy;
+    }
+
+    private SlowRequestWatchdog slowRequestWatchdog;
+
+    public SlowRequestWatchdog getSlowRequestWatchdog() {
+        return slowRequestWatchdog;
+    }
+
+    /**
+     * Samples the stacks of requests running longer than the watchdog's threshold; the aggregated profile is appended
+     * to the request's log line, which is then always written.
+     */
+    public void setSlowRequestWatchdog(SlowRequestWatchdog slowRequestWatchdog) {
+        this.slowRequestWatchdog = slowRequestWatchdog;
     }
 
     // For example, if you want to log the current user the request, you can override this method.
@@ -41,70 +116,89 @@ public class ShowRequestInterceptor implements HandlerInterceptor {
         return null;
     }
 
-    private static final ThreadLocal<Long> startTimeTl = new ThreadLocal<>();
-    private static final ThreadLocal<String> requestIpAddressTl = new ThreadLocal<>();
-    private static final DecimalFormat df = new DecimalFormat("#,###");
-
     public static String getRequestIpAddress() {
-        return requestIpAddressTl.get();
+        RequestContext context = RequestContext.current();
+        return context == null ? null : context.getIpAddress();
     }
 
     public void clearStates() {
-        ExceptionHandlerUtils.clearStates();
-        startTimeTl.remove();
-        requestIpAddressTl.remove();
+        RequestContext.end();
     }
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        startTimeTl.set(System.currentTimeMillis());
-        requestIpAddressTl.set(getIpAddressFromRequest(request));
+        Object suspended = request.getDispatcherType() == DispatcherType.ASYNC ? request.getAttribute(CONTEXT_ATTRIBUTE) : null;
+        if (suspended instanceof RequestContext context) {
+            request.removeAttribute(CONTEXT_ATTRIBUTE);
+            RequestContext.resume(context);
+        } else {
+            RequestContext.begin(getIpAddressFromRequest(request));
+        }
+        if (slowRequestWatchdog != null) {
+            slowRequestWatchdog.begin();
+        }
         return true;
     }
 
+    /**
+     * Called instead of {@link #afterCompletion} when the handler starts async processing: stops watching the container thread,
+     * which goes back to the pool, and unbinds the context from it until the async dispatch resumes it.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        try {
+            if (slowRequestWatchdog != null) {
+                String slowRequestProfile = slowRequestWatchdog.end();
+                if (slowRequestProfile != null) {
+                    request.setAttribute(SLOW_REQUEST_PROFILE_ATTRIBUTE, slowRequestProfile);
+                }
+            }
+            RequestContext context = RequestContext.current();
+            if (context != null) {
+                request.setAttribute(CONTEXT_ATTRIBUTE, context);
+            }
+        } finally {
+            RequestContext.end();
+        }
+    }
+
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
         try {
+            String slowRequestProfile = slowRequestWatchdog == null ? null : slowRequestWatchdog.end();
+            if (slowRequestProfile == null) {
+                slowRequestProfile = (String) request.getAttribute(SLOW_REQUEST_PROFILE_ATTRIBUTE);
+            }
             String requestMethod = request.getMethod();
             String requestURI = request.getRequestURI();
 
-            boolean recordLog = !isUriIn(requestMethod, requestURI, skipLogRecordUris);
-            Exception e = Optional.ofNullable(ExceptionHandlerUtils.getException()).orElse(ex);
+            boolean recordLog = !skipLogRecordUris.matches(requestMethod, requestURI);
+            RequestContext context = RequestContext.getOrCreate();
+            context.endPhase();
+            Exception e = context.getException() != null ? context.getException() : ex;
             boolean hasException = e != null;
-            HttpStatus status = Optional.ofNullable(ExceptionHandlerUtils.getStatus()).orElse(
-                    Optional.ofNullable(e)
-                            .map(ExceptionHandlerUtils::getCodeByException)
-                            .orElse(HttpStatus.OK)
-            );
-            boolean is5xxServerError = status.is5xxServerError();
-
-            if (hasException || recordLog) {
-                String ipAddress = requestIpAddressTl.get();
-                String logExtraField = Optional.ofNullable(getLogExtraField()).map(String::strip).filter(s -> !s.isEmpty()).map(s -> " " + s).orElse("");
-                String requestUriAndQueryString = getRequestUriAndQueryString(request).toString();
-                String timeSpent = df.format(System.currentTimeMillis() - startTimeTl.get());
-                if (hasException) {
-                    boolean showExceptionStackTrace = logException || is5xxServerError;
-                    Object[] args = new Object[showExceptionStackTrace ? 8 : 7];
-                    args[0] = ipAddress;
-                    args[1] = logExtraField;
-                    args[2] = requestMethod;
-                    args[3] = requestUriAndQueryString;
-                    args[4] = timeSpent;
-                    args[5] = status;
-                    args[6] = e.getMessage();
-                    if (showExceptionStackTrace) {
-                        args[7] = e;
-                    }
-                    log.warn("({}){} [{}] {} <{} ms> -> code: {}, message: {}", args);
+            HttpStatus status = context.getStatus() != null ? context.getStatus()
+                    : hasException ? ExceptionHandlerUtils.getCodeByException(e) : HttpStatus.OK;
+
+            String route = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            int statusCode = hasException ? status.value() : response.getStatus();
+            long elapsedNanos = context.getElapsedNanos();
+            long elapsedMillis = elapsedNanos / 1_000_000;
+            if (latencyRecorder != null) {
+                latencyRecorder.record(requestMethod, route, elapsedNanos, statusCode);
+            }
+
+            // rejections of RateLimitInterceptor come in floods, they go through the policy like normal requests
+            boolean alwaysLog = hasException && !(e instanceof RateLimitException);
+            if (alwaysLog || slowRequestProfile != null || recordLog && (requestLogPolicy == null || requestLogPolicy.shouldLog(route, elapsedMillis, statusCode, false))) {
+                boolean showExceptionStackTrace = alwaysLog && (logException || status.is5xxServerError());
+                String timing = context.formatSpans();
+                if (accessLogWriter != null) {
+                    accessLogWriter.write(context.getIpAddress(), getLogExtraField(), requestMethod, requestURI, request.getQueryString(),
+                            elapsedMillis, timing, status, e, showExceptionStackTrace, slowRequestProfile);
                 } else {
-                    log.info("({}){} [{}] {} <{} ms>",
-                            ipAddress,
-                            logExtraField,
-                            requestMethod,
-                            requestUriAndQueryString,
-                            timeSpent
-                    );
+                    AccessLogWriter.writeLog(log, new StringBuilder(128), context.getIpAddress(), getLogExtraField(), requestMethod, requestURI, request.getQueryString(),
+                            elapsedMillis, timing, status, e, showExceptionStackTrace, slowRequestProfile);
                 }
             }
         } finally {
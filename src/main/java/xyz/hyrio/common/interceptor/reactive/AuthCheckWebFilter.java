@@ -0,0 +1,133 @@
+package xyz.hyrio.common.interceptor.reactive;
+
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import xyz.hyrio.common.exception.request.AuthorizationException;
+import xyz.hyrio.common.interceptor.AuthCheckInterceptor;
+import xyz.hyrio.common.tool.RouteMatcher;
+
+import static xyz.hyrio.common.util.ObjectUtils.blank2NullOtherwiseStrip;
+import static xyz.hyrio.common.util.ObjectUtils.requireHasTextElse;
+
+/**
+ * Reactive counterpart of {@link AuthCheckInterceptor}. The token is taken from the query string or the header
+ * (form parameters are not read, that would require consuming the body).
+ * <p>
+ * The user info returned by the {@link TokenValidator} is stored in the Reactor context and as an exchange attribute,
+ * both under {@link #USER_INFO_KEY}; read it with {@link #currentUserInfo(Class)} or {@link #getUserInfo(ServerWebExchange, Class)}.
+ */
+public class AuthCheckWebFilter implements WebFilter, Ordered {
+    public static final int DEFAULT_ORDER = ShowRequestWebFilter.DEFAULT_ORDER + 200;
+
+    public static final String USER_INFO_KEY = AuthCheckWebFilter.class.getName() + ".userInfo";
+
+    @FunctionalInterface
+    public interface TokenValidator {
+        /**
+         * @return the user info of the token, never {@code null}.
+         * @throws Exception if the token is invalid.
+         */
+        Object validate(String token) throws Exception;
+    }
+
+    private RouteMatcher skipAuthCheckUris = RouteMatcher.EMPTY;
+    private String tokenKey = AuthCheckInterceptor.DEFAULT_TOKEN_HEADER_KEY;
+    private AuthCheckInterceptor.RevocationChecker revocationChecker;
+    private int order = DEFAULT_ORDER;
+
+    private final TokenValidator tokenValidator;
+    private final Scheduler scheduler;
+
+    public String[][] getSkipAuthCheckUris() {
+        return skipAuthCheckUris.getRules();
+    }
+
+    public void setSkipAuthCheckUris(String[][] skipAuthCheckUris) {
+        this.skipAuthCheckUris = new RouteMatcher(skipAuthCheckUris);
+    }
+
+    public String getTokenKey() {
+        return tokenKey;
+    }
+
+    public void setTokenKey(String tokenKey) {
+        this.tokenKey = tokenKey;
+    }
+
+    public AuthCheckInterceptor.RevocationChecker getRevocationChecker() {
+        return revocationChecker;
+    }
+
+    public void setRevocationChecker(AuthCheckInterceptor.RevocationChecker revocationChecker) {
+        this.revocationChecker = revocationChecker;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    /**
+     * Runs the validator on {@link Schedulers#boundedElastic()}, for validators that may block (database, Redis, ...).
+     */
+    public AuthCheckWebFilter(TokenValidator tokenValidator) {
+        this(tokenValidator, Schedulers.boundedElastic());
+    }
+
+    /**
+     * @param scheduler where the validator runs; {@code null} runs it on the calling thread, only for validators that
+     *                  never block, e.g. {@link xyz.hyrio.common.tool.TokenTool#parse(String, Class)} which only decrypts.
+     */
+    public AuthCheckWebFilter(TokenValidator tokenValidator, Scheduler scheduler) {
+        this.tokenValidator = tokenValidator;
+        this.scheduler = scheduler;
+    }
+
+    public static <T> Mono<T> currentUserInfo(Class<T> type) {
+        return Mono.deferContextual(context -> Mono.justOrEmpty(context.getOrEmpty(USER_INFO_KEY)))
+                .filter(type::isInstance)
+                .map(type::cast);
+    }
+
+    public static <T> T getUserInfo(ServerWebExchange exchange, Class<T> type) {
+        Object userInfo = exchange.getAttribute(USER_INFO_KEY);
+        return type.isInstance(userInfo) ? type.cast(userInfo) : null;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (skipAuthCheckUris.matches(request.getMethod().name(), request.getPath().value())) {
+            return chain.filter(exchange);
+        }
+
+        String token = requireHasTextElse(
+                blank2NullOtherwiseStrip(request.getQueryParams().getFirst(tokenKey)),
+                blank2NullOtherwiseStrip(request.getHeaders().getFirst(tokenKey))
+        );
+        if (revocationChecker != null && revocationChecker.isRevoked(token)) {
+            return Mono.error(new AuthorizationException("token is revoked"));
+        }
+        Mono<Object> userInfo = Mono.fromCallable(() -> tokenValidator.validate(token));
+        if (scheduler != null) {
+            userInfo = userInfo.subscribeOn(scheduler);
+        }
+        return userInfo
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("no user info")))
+                .onErrorMap(e -> !(e instanceof AuthorizationException), e -> new AuthorizationException("token is invalid (" + e.getMessage() + ")", e))
+                .flatMap(info -> {
+                    exchange.getAttributes().put(USER_INFO_KEY, info);
+                    return chain.filter(exchange).contextWrite(context -> context.put(USER_INFO_KEY, info));
+                });
+    }
+}
@@ -0,0 +1,57 @@
+package xyz.hyrio.common.interceptor.reactive;
+
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import xyz.hyrio.common.interceptor.DailyActivityStatsInterceptor.AccessRecorder;
+
+/**
+ * Reactive counterpart of {@link xyz.hyrio.common.interceptor.DailyActivityStatsInterceptor}.
+ */
+public class DailyActivityStatsWebFilter implements WebFilter, Ordered {
+    public static final int DEFAULT_ORDER = ShowRequestWebFilter.DEFAULT_ORDER + 400;
+
+    private final AccessRecorder accessRecorder;
+    private final Scheduler scheduler;
+    private int order = DEFAULT_ORDER;
+
+    /**
+     * Runs the recorder on {@link Schedulers#boundedElastic()}, for recorders that may block (database, Redis, ...).
+     */
+    public DailyActivityStatsWebFilter(AccessRecorder accessRecorder) {
+        this(accessRecorder, Schedulers.boundedElastic());
+    }
+
+    /**
+     * @param scheduler where the recorder runs; {@code null} runs it on the calling thread, only for recorders that never block,
+     *                  such as {@link xyz.hyrio.common.tool.ActivityStatsRecorder}.
+     */
+    public DailyActivityStatsWebFilter(AccessRecorder accessRecorder, Scheduler scheduler) {
+        this.accessRecorder = accessRecorder;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        RequestState state = RequestState.get(exchange);
+        String ipAddress = state != null ? state.getIpAddress() : RequestState.getIpAddressFromRequest(exchange.getRequest());
+        Mono<Void> record = Mono.fromRunnable(() -> accessRecorder.recordAccess(ipAddress));
+        if (scheduler != null) {
+            record = record.subscribeOn(scheduler);
+        }
+        return record.then(Mono.defer(() -> chain.filter(exchange)));
+    }
+}
@@ -0,0 +1,53 @@
+package xyz.hyrio.common.interceptor.reactive;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+import xyz.hyrio.common.pojo.vo.CommonVo;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * Writes exceptions raised by the filters in this package (which {@code @ExceptionHandler} methods do not see) as
+ * {@link CommonVo} JSON, with the status of {@link xyz.hyrio.common.util.ExceptionHandlerUtils#getCodeByException(Exception)}.
+ * {@link ResponseStatusException}s (404 etc.) are left to Spring's default handler.
+ */
+public class ExceptionWebHandler implements WebExceptionHandler, Ordered {
+    private final ObjectMapper objectMapper;
+
+    public ExceptionWebHandler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public int getOrder() {
+        return -2; // before Spring Boot's DefaultErrorWebExceptionHandler (-1)
+    }
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        ServerHttpResponse response = exchange.getResponse();
+        if (response.isCommitted() || ex instanceof ResponseStatusException) {
+            return Mono.error(ex);
+        }
+        HttpStatusCode status = RequestState.getCodeByException(ex);
+        String message = ex.getMessage();
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(CommonVo.of(status.value(), hasText(message) ? message : ex.getClass().getName()));
+        } catch (JsonProcessingException e) {
+            ex.addSuppressed(e);
+            return Mono.error(ex);
+        }
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+}
@@ -0,0 +1,94 @@
+package xyz.hyrio.common.interceptor.reactive;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import xyz.hyrio.common.util.ExceptionHandlerUtils;
+import xyz.hyrio.common.util.ServletUtils;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Per-request state of the reactive filter chain, the counterpart of the thread-bound {@link xyz.hyrio.common.tool.RequestContext}.
+ * Created by {@link ShowRequestWebFilter}, stored both in the Reactor context (key {@code RequestState.class})
+ * and as an exchange attribute, so it is reachable from reactive code and from synchronous callbacks alike.
+ */
+public final class RequestState {
+    public static final String ATTRIBUTE = RequestState.class.getName();
+
+    private final long startNanos = System.nanoTime();
+    private final String ipAddress;
+    private volatile Throwable exception;
+    private volatile HttpStatusCode status;
+
+    public RequestState(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public Throwable getException() {
+        return exception;
+    }
+
+    public HttpStatusCode getStatus() {
+        return status;
+    }
+
+    /**
+     * Records an exception handled by an {@code @ExceptionHandler}, so that the request log still reports it;
+     * see {@link #getResponseEntity(ServerWebExchange, Exception)}.
+     */
+    public void setException(HttpStatusCode status, Throwable exception) {
+        this.status = status;
+        this.exception = exception;
+    }
+
+    public static Mono<RequestState> current() {
+        return Mono.deferContextual(context -> Mono.justOrEmpty(context.getOrEmpty(RequestState.class)));
+    }
+
+    public static RequestState get(ServerWebExchange exchange) {
+        return exchange.getAttribute(ATTRIBUTE);
+    }
+
+    /**
+     * The reactive counterpart of {@link ExceptionHandlerUtils#getResponseEntity(Exception)}, for {@code @ExceptionHandler} methods
+     * (which can take the {@link ServerWebExchange} as an argument): there is no thread-bound request context under WebFlux,
+     * so the exception is recorded in the exchange's state for {@link ShowRequestWebFilter}.
+     */
+    public static ResponseEntity<?> getResponseEntity(ServerWebExchange exchange, Exception e) {
+        return getResponseEntity(exchange, ExceptionHandlerUtils.getCodeByException(e), e);
+    }
+
+    public static ResponseEntity<?> getResponseEntity(ServerWebExchange exchange, HttpStatus status, Exception e) {
+        RequestState state = get(exchange);
+        if (state != null) {
+            state.setException(status, e);
+        }
+        return ExceptionHandlerUtils.getResponseEntity(status, e);
+    }
+
+    public static HttpStatusCode getCodeByException(Throwable e) {
+        if (e instanceof ResponseStatusException rse) return rse.getStatusCode();
+        if (e instanceof Exception ex) return ExceptionHandlerUtils.getCodeByException(ex);
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    public static String getIpAddressFromRequest(ServerHttpRequest request) {
+        return ServletUtils.getIpAddress(request.getHeaders()::getFirst, () -> {
+            InetSocketAddress remoteAddress = request.getRemoteAddress();
+            return remoteAddress == null ? null : remoteAddress.getHostString();
+        });
+    }
+}
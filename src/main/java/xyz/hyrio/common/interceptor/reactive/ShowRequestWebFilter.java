@@ -0,0 +1,115 @@
+package xyz.hyrio.common.interceptor.reactive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import xyz.hyrio.common.tool.AccessLogWriter;
+import xyz.hyrio.common.tool.RouteMatcher;
+
+import java.util.Optional;
+
+/**
+ * Reactive counterpart of {@link xyz.hyrio.common.interceptor.ShowRequestInterceptor}.
+ * Must run before the other filters in this package, which read the {@link RequestState} it creates.
+ */
+public class ShowRequestWebFilter implements WebFilter, Ordered {
+    private static final Logger log = LoggerFactory.getLogger(ShowRequestWebFilter.class);
+
+    public static final int DEFAULT_ORDER = Ordered.HIGHEST_PRECEDENCE + 100;
+
+    private final boolean logException;
+
+    private RouteMatcher skipLogRecordUris = RouteMatcher.EMPTY;
+    private int order = DEFAULT_ORDER;
+    private AccessLogWriter accessLogWriter;
+
+    public ShowRequestWebFilter() {
+        this(false);
+    }
+
+    public ShowRequestWebFilter(boolean logException) {
+        this.logException = logException;
+    }
+
+    public String[][] getSkipLogRecordUris() {
+        return skipLogRecordUris.getRules();
+    }
+
+    public void setSkipLogRecordUris(String[][] skipLogRecordUris) {
+        this.skipLogRecordUris = new RouteMatcher(skipLogRecordUris);
+    }
+
+    public AccessLogWriter getAccessLogWriter() {
+        return accessLogWriter;
+    }
+
+    /**
+     * @see xyz.hyrio.common.interceptor.ShowRequestInterceptor#setAccessLogWriter(AccessLogWriter)
+     */
+    public void setAccessLogWriter(AccessLogWriter accessLogWriter) {
+        this.accessLogWriter = accessLogWriter;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    // For example, if you want to log the current user the request, you can override this method.
+    // Called once the response is complete, exchange attributes set by later filters are visible here.
+    public String getLogExtraField(ServerWebExchange exchange) {
+        return null;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        RequestState state = new RequestState(RequestState.getIpAddressFromRequest(exchange.getRequest()));
+        exchange.getAttributes().put(RequestState.ATTRIBUTE, state);
+        return chain.filter(exchange)
+                .doOnError(e -> {
+                    if (state.getException() == null) {
+                        state.setException(RequestState.getCodeByException(e), e);
+                    }
+                })
+                .doFinally(signal -> logRequest(exchange, state))
+                .contextWrite(context -> context.put(RequestState.class, state));
+    }
+
+    private void logRequest(ServerWebExchange exchange, RequestState state) {
+        ServerHttpRequest request = exchange.getRequest();
+        String requestMethod = request.getMethod().name();
+        String requestURI = request.getPath().value();
+
+        boolean recordLog = !skipLogRecordUris.matches(requestMethod, requestURI);
+        Throwable e = state.getException();
+        boolean hasException = e != null;
+        if (!hasException && !recordLog) {
+            return;
+        }
+        HttpStatusCode status = Optional.ofNullable(state.getStatus())
+                .or(() -> Optional.ofNullable(exchange.getResponse().getStatusCode()))
+                .orElse(HttpStatus.OK);
+
+        String query = request.getURI().getRawQuery();
+        boolean showExceptionStackTrace = hasException && (logException || status.is5xxServerError());
+        Exception exception = e == null || e instanceof Exception ? (Exception) e : new RuntimeException(e);
+        if (accessLogWriter != null) {
+            accessLogWriter.write(state.getIpAddress(), getLogExtraField(exchange), requestMethod, requestURI, query,
+                    state.getElapsedMillis(), null, status, exception, showExceptionStackTrace, null);
+        } else {
+            AccessLogWriter.writeLog(log, new StringBuilder(128), state.getIpAddress(), getLogExtraField(exchange), requestMethod, requestURI, query,
+                    state.getElapsedMillis(), null, status, exception, showExceptionStackTrace, null);
+        }
+    }
+}
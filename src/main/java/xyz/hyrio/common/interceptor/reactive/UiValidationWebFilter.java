@@ -0,0 +1,47 @@
+package xyz.hyrio.common.interceptor.reactive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import xyz.hyrio.common.exception.request.UiDeprecatedException;
+
+/**
+ * Reactive counterpart of {@link xyz.hyrio.common.interceptor.UiValidationInterceptor}.
+ */
+public class UiValidationWebFilter implements WebFilter, Ordered {
+    private static final Logger log = LoggerFactory.getLogger(UiValidationWebFilter.class);
+
+    public static final int DEFAULT_ORDER = ShowRequestWebFilter.DEFAULT_ORDER + 100;
+
+    private final String requestHeaderKey;
+    private final String buildVersion;
+    private int order = DEFAULT_ORDER;
+
+    public UiValidationWebFilter(String requestHeaderKey, String buildVersion) {
+        this.requestHeaderKey = requestHeaderKey;
+        this.buildVersion = buildVersion;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String buildVersionInHeader = exchange.getRequest().getHeaders().getFirst(requestHeaderKey);
+        if (!buildVersion.equals(buildVersionInHeader)) {
+            log.warn("UI deprecated. buildVersion: {}, buildVersionInHeader: {}", buildVersion, buildVersionInHeader);
+            return Mono.error(new UiDeprecatedException("页面已过期，请刷新页面后重试"));
+        }
+        return chain.filter(exchange);
+    }
+}
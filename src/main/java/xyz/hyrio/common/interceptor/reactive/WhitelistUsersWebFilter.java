@@ -0,0 +1,47 @@
+package xyz.hyrio.common.interceptor.reactive;
+
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import xyz.hyrio.common.exception.request.AuthorizationException;
+
+import java.util.List;
+
+/**
+ * Reactive counterpart of {@link xyz.hyrio.common.interceptor.WhitelistUsersInterceptor}.
+ */
+public class WhitelistUsersWebFilter implements WebFilter, Ordered {
+    public static final int DEFAULT_ORDER = ShowRequestWebFilter.DEFAULT_ORDER + 300;
+
+    private final List<String> whitelistUsernames;
+    private final Mono<String> currentUsername;
+    private int order = DEFAULT_ORDER;
+
+    /**
+     * @param currentUsername subscribed once per request inside the filter chain, so it can read the Reactor context,
+     *                        e.g. {@code AuthCheckWebFilter.currentUserInfo(User.class).map(User::getUsername)}.
+     */
+    public WhitelistUsersWebFilter(List<String> whitelistUsernames, Mono<String> currentUsername) {
+        this.whitelistUsernames = whitelistUsernames;
+        this.currentUsername = currentUsername;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return currentUsername
+                .filter(whitelistUsernames::contains)
+                .switchIfEmpty(Mono.error(() -> new AuthorizationException("当前用户不在白名单中")))
+                .flatMap(username -> chain.filter(exchange));
+    }
+}
@@ -0,0 +1,339 @@
+package xyz.hyrio.common.tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatusCode;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static xyz.hyrio.common.util.ObjectUtils.requireHasTextElse;
+
+/**
+ * 异步写访问日志：请求线程只把字段写入有界环形缓冲区中预先分配的槽位，由后台线程分批格式化并写入日志。
+ * <p>
+ * 缓冲区支持多个请求线程并发写入、一个后台线程读取，写入不加锁。缓冲区满时按 {@link OverflowPolicy} 处理。
+ * {@link #close()}（以及 JVM 退出时）会写完缓冲区中剩余的记录；关闭之后的记录直接在调用线程中同步写入，
+ * 与关闭同时发布的记录由发布它的请求线程写入，不会丢失。
+ *
+ * @see xyz.hyrio.common.interceptor.ShowRequestInterceptor#setAccessLogWriter(AccessLogWriter)
+ */
+public class AccessLogWriter implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(AccessLogWriter.class);
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    public enum OverflowPolicy {
+        /**
+         * 丢弃新记录并计数，请求线程不等待。
+         */
+        DROP,
+        /**
+         * 请求线程等待后台线程腾出空间，不丢失记录。
+         */
+        BLOCK
+    }
+
+    private static final class Slot {
+        private volatile long sequence = -1;
+        private String ipAddress;
+        private String logExtraField;
+        private String method;
+        private String uri;
+        private String query;
+        private long timeSpentMillis;
+        private String timing;
+        private HttpStatusCode status;
+        private Exception exception;
+        private boolean showExceptionStackTrace;
+        private String details;
+
+        private void clear() {
+            ipAddress = null;
+            logExtraField = null;
+            method = null;
+            uri = null;
+            query = null;
+            timing = null;
+            status = null;
+            exception = null;
+            details = null;
+        }
+    }
+
+    private final Logger accessLogger;
+    private final OverflowPolicy overflowPolicy;
+    private final Slot[] slots;
+    private final int mask;
+
+    /**
+     * 下一个要分配给请求线程的序号。
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * 后台线程下一个要读取的序号，小于它的槽位都可以重新使用。
+     */
+    private volatile long consumed;
+    private volatile boolean consumerParked;
+    private volatile boolean running = true;
+    /**
+     * 读取缓冲区的线程持有：正常时只有后台线程，关闭之后发布记录的请求线程也可能读取。
+     */
+    private final Object drainLock = new Object();
+
+    private final LongAdder droppedCount = new LongAdder();
+    private long reportedDroppedCount;
+
+    private final Thread consumer;
+    private final Thread shutdownHook;
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * 因缓冲区满而丢弃的记录数，只在 {@link OverflowPolicy#DROP} 下增加。
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @param accessLogger   写入访问日志的 logger，保持原来的 logger 名称，日志配置不需要修改。
+     * @param capacity       缓冲区容量，向上取整为 2 的幂。
+     * @param overflowPolicy 缓冲区满时的处理方式。
+     * @param threadName     后台线程名称，为空时使用 {@code access-log-writer}。
+     */
+    public AccessLogWriter(Logger accessLogger, int capacity, OverflowPolicy overflowPolicy, String threadName) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be in [1, 2^30]");
+        }
+        this.accessLogger = accessLogger;
+        this.overflowPolicy = overflowPolicy;
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+
+        this.consumer = new Thread(this::consume);
+        consumer.setName(requireHasTextElse(threadName, "access-log-writer"));
+        consumer.setDaemon(true);
+        consumer.start();
+
+        this.shutdownHook = new Thread(this::stop);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * 提交一条访问日志记录，参数见 {@link #writeLog}。
+     *
+     * @return 记录被丢弃时返回 {@code false}。
+     */
+    public boolean write(String ipAddress, String logExtraField, String method, String uri, String query,
+                         long timeSpentMillis, String timing, HttpStatusCode status, Exception exception, boolean showExceptionStackTrace, String details) {
+        long seq;
+        while (true) {
+            if (!running) {
+                writeLog(accessLogger, new StringBuilder(128), ipAddress, logExtraField, method, uri, query, timeSpentMillis, timing, status, exception, showExceptionStackTrace, details);
+                return true;
+            }
+            seq = claimed.get();
+            if (seq - consumed >= slots.length) {
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    droppedCount.increment();
+                    return false;
+                }
+                LockSupport.unpark(consumer);
+                LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+                continue;
+            }
+            if (claimed.compareAndSet(seq, seq + 1)) {
+                break;
+            }
+        }
+        Slot slot = slots[(int) seq & mask];
+        slot.ipAddress = ipAddress;
+        slot.logExtraField = logExtraField;
+        slot.method = method;
+        slot.uri = uri;
+        slot.query = query;
+        slot.timeSpentMillis = timeSpentMillis;
+        slot.timing = timing;
+        slot.status = status;
+        slot.exception = exception;
+        slot.showExceptionStackTrace = showExceptionStackTrace;
+        slot.details = details;
+        slot.sequence = seq; // 发布，之前写入的字段对后台线程可见
+        if (!running) {
+            // 检查 running 之后开始了关闭，后台线程可能在本条发布之前已经退出，由本线程写完剩余的记录
+            drainAll(new StringBuilder(128));
+        } else if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    private void consume() {
+        StringBuilder sb = new StringBuilder(256);
+        while (true) {
+            if (drain(sb) > 0) {
+                continue;
+            }
+            if (!running) {
+                // 先读 running 再读槽位：在 stop() 之前发布的记录在这里一定可见，之后发布的由发布者自己写入
+                drainAll(sb);
+                return;
+            }
+            consumerParked = true;
+            long next = consumed;
+            if (slots[(int) next & mask].sequence != next) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            consumerParked = false;
+        }
+    }
+
+    private void drainAll(StringBuilder sb) {
+        while (drain(sb) > 0) {
+        }
+    }
+
+    /**
+     * 按顺序写入已发布的记录，最多 {@link #MAX_BATCH_SIZE} 条，遇到尚未发布的槽位即停止。
+     *
+     * @return 写入的记录数。
+     */
+    private int drain(StringBuilder sb) {
+        synchronized (drainLock) {
+            long next = consumed;
+            int n = 0;
+            Slot slot;
+            while (n < MAX_BATCH_SIZE && (slot = slots[(int) next & mask]).sequence == next) {
+                try {
+                    writeLog(accessLogger, sb, slot.ipAddress, slot.logExtraField, slot.method, slot.uri, slot.query,
+                            slot.timeSpentMillis, slot.timing, slot.status, slot.exception, slot.showExceptionStackTrace, slot.details);
+                } catch (Throwable t) {
+                    log.error("Failed to write access log", t);
+                }
+                slot.clear();
+                next++;
+                n++;
+            }
+            if (n > 0) {
+                consumed = next;
+            }
+            reportDropped();
+            return n;
+        }
+    }
+
+    private void reportDropped() {
+        long dropped = droppedCount.sum();
+        if (dropped != reportedDroppedCount) {
+            log.warn("{} access log records dropped because the buffer is full", dropped - reportedDroppedCount);
+            reportedDroppedCount = dropped;
+        }
+    }
+
+    private void stop() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 写完缓冲区中剩余的记录后停止后台线程，最多等待 10 秒。
+     */
+    @Override
+    public void close() {
+        stop();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // JVM 正在退出，钩子已经在运行
+        }
+    }
+
+    private static void appendThousands(StringBuilder sb, long value) {
+        if (value < 0) {
+            sb.append('-');
+            value = -value;
+        }
+        if (value < 1000) {
+            sb.append(value);
+            return;
+        }
+        appendThousands(sb, value / 1000);
+        long rest = value % 1000;
+        sb.append(',');
+        if (rest < 100) sb.append('0');
+        if (rest < 10) sb.append('0');
+        sb.append(rest);
+    }
+
+    /**
+     * 格式化并写入一条访问日志，同步和异步两种方式共用，格式与 {@code ShowRequestInterceptor} 原来的输出相同。
+     *
+     * @param sb      复用的缓冲区，会被清空。
+     * @param timing  各阶段的耗时（{@code Server-Timing} 格式），写在总耗时之后，可以为 {@code null}。
+     * @param details 附加在行尾的内容（如慢请求的调用栈），可以为 {@code null}。
+     */
+    public static void writeLog(Logger logger, StringBuilder sb, String ipAddress, String logExtraField, String method, String uri, String query,
+                                long timeSpentMillis, String timing, HttpStatusCode status, Exception exception, boolean showExceptionStackTrace, String details) {
+        if (exception != null ? !logger.isWarnEnabled() : !logger.isInfoEnabled()) {
+            return;
+        }
+        sb.setLength(0);
+        sb.append('(').append(ipAddress).append(')');
+        if (logExtraField != null) {
+            String extra = logExtraField.strip();
+            if (!extra.isEmpty()) {
+                sb.append(' ').append(extra);
+            }
+        }
+        sb.append(" [").append(method).append("] ").append(uri);
+        if (query != null && !query.isBlank()) {
+            sb.append('?').append(query);
+        }
+        sb.append(" <");
+        appendThousands(sb, timeSpentMillis);
+        sb.append(" ms");
+        if (timing != null) {
+            sb.append(" | ").append(timing);
+        }
+        sb.append('>');
+        if (exception != null) {
+            sb.append(" -> code: ").append(status).append(", message: ").append(exception.getMessage());
+        }
+        if (details != null) {
+            sb.append('\n').append(details);
+        }
+        if (exception != null) {
+            if (showExceptionStackTrace) {
+                logger.warn(sb.toString(), exception);
+            } else {
+                logger.warn(sb.toString());
+            }
+        } else {
+            logger.info(sb.toString());
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package xyz.hyrio.common.tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import xyz.hyrio.common.interceptor.DailyActivityStatsInterceptor;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在内存中统计每日访问，定期把增量批量写入 {@link Sink}，请求线程不做 I/O。
+ * <p>
+ * 每个 IP 的访问次数用 {@link LongAdder} 精确计数，访客数用 {@link HyperLogLog} 估计。计数写入当前的“窗口”，
+ * 每隔 {@code flushInterval}、窗口中的 IP 数达到 {@code maxPendingIps} 或者日期变化时换一个新窗口；
+ * 每个窗口记录正在写入它的请求线程数，旧窗口等这些线程都写完后由后台线程合并，按日期各调用一次 {@link Sink#flush}，不会漏掉计数。
+ * 写入失败的一批增量原样保留（内容和 {@code batchId} 不变）并在之后重试，重试成功之前同一天的新增量只累积不写入；
+ * 超过一天仍未写入的丢弃。
+ * <p>
+ * 同一个 IP 在一个窗口中只有第一次访问时更新 HyperLogLog，之后每次访问只是一次哈希表查找、一次 {@link LongAdder#increment()}
+ * 和登记、注销写入线程各一次原子操作。
+ *
+ * @see DailyActivityStatsInterceptor
+ */
+public class ActivityStatsRecorder implements DailyActivityStatsInterceptor.AccessRecorder, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ActivityStatsRecorder.class);
+
+    /**
+     * 换下的窗口仍有请求线程在写入时，隔多久再检查。
+     */
+    private static final long RETRY_MILLIS = 10;
+    /**
+     * {@link #close()} 最多等待多久让请求线程写完。
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+    /**
+     * 登记写入线程的槽位数，不小于 CPU 数的 2 的幂，最多 64。
+     */
+    private static final int WRITER_STRIPES = Math.min(64, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    /**
+     * 相邻槽位间隔的 long 数，使它们不在同一个缓存行中。
+     */
+    private static final int STRIPE_PADDING = 16;
+
+    /**
+     * 接收统计增量，在后台线程中调用。
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * 抛出异常时这批增量可能已经部分写入，之后会以相同的 {@code batchId} 和内容重试，
+         * 计数不能重复的实现应当据此去重（如 {@link RedisSink}）。
+         *
+         * @param day      统计日期。
+         * @param batchId  这批增量的唯一标识，重试时不变。
+         * @param hitsByIp 自上次写入以来每个 IP 增加的访问次数。
+         * @param visitors 这些 IP 的 HyperLogLog，可以与之前保存的合并得到当天的访客数。
+         * @throws Exception 写入失败时抛出，这批增量会在下次重试。
+         */
+        void flush(LocalDate day, String batchId, Map<String, Long> hitsByIp, HyperLogLog visitors) throws Exception;
+    }
+
+    /**
+     * 写入 Redis：每天一个哈希表 {@code <prefix>{<yyyy-MM-dd>}:hits} 记录每个 IP 的访问次数，
+     * 一个 HyperLogLog {@code <prefix>{<yyyy-MM-dd>}:uv} 记录访客（Redis 的格式与 {@link HyperLogLog} 不同，写入的是 IP 本身）。
+     * 同一天的键以日期为 hash tag，在 Redis Cluster 中位于同一个槽，可以在一个脚本中访问。
+     * <p>
+     * 一批增量按 {@value #CHUNK_SIZE} 个 IP 分段，每段在一个脚本中原子写入，并以 {@code <prefix>{<yyyy-MM-dd>}:batch:<batchId>:<段号>}
+     * 标记已写入（保留 {@link #MARKER_TTL}），重试时跳过已写入的段，失败后重试不会重复计数。
+     */
+    public static class RedisSink implements Sink {
+        private static final int CHUNK_SIZE = 1000;
+        /**
+         * 长于增量被丢弃前的重试期限（最多两天）。
+         */
+        private static final Duration MARKER_TTL = Duration.ofDays(3);
+        /**
+         * KEYS: 哈希表、HyperLogLog、段标记；ARGV: 键的过期秒数（0 表示不过期）、标记的过期秒数、IP 与次数交替。
+         * 返回 0 表示这一段已经写入过。
+         */
+        private static final RedisScript<Long> FLUSH_SCRIPT = new DefaultRedisScript<>("""
+                if not redis.call('SET', KEYS[3], '1', 'NX', 'EX', ARGV[2]) then
+                    return 0
+                end
+                local ips = {}
+                for i = 3, #ARGV, 2 do
+                    redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+                    ips[#ips + 1] = ARGV[i]
+                end
+                redis.call('PFADD', KEYS[2], unpack(ips))
+                local ttl = tonumber(ARGV[1])
+                if ttl > 0 then
+                    redis.call('EXPIRE', KEYS[1], ttl)
+                    redis.call('EXPIRE', KEYS[2], ttl)
+                end
+                return 1
+                """, Long.class);
+
+        private final StringRedisTemplate redisTemplate;
+        private final String keyPrefix;
+        private final Duration ttl;
+
+        /**
+         * @param ttl 键的过期时间，为 {@code null} 时不过期。
+         */
+        public RedisSink(StringRedisTemplate redisTemplate, String keyPrefix, Duration ttl) {
+            this.redisTemplate = redisTemplate;
+            this.keyPrefix = keyPrefix;
+            this.ttl = ttl;
+        }
+
+        @Override
+        public void flush(LocalDate day, String batchId, Map<String, Long> hitsByIp, HyperLogLog visitors) {
+            String dayKey = keyPrefix + "{" + day + "}";
+            List<String> keys = new ArrayList<>(List.of(dayKey + ":hits", dayKey + ":uv", ""));
+            String ttlSeconds = ttl == null ? "0" : Long.toString(ttl.toSeconds());
+            String markerTtlSeconds = Long.toString(MARKER_TTL.toSeconds());
+            List<String> args = new ArrayList<>(2 + 2 * Math.min(hitsByIp.size(), CHUNK_SIZE));
+            int chunk = 0;
+            // 同一批增量的内容不变，遍历顺序相同，重试时分段与第一次一致
+            for (Iterator<Map.Entry<String, Long>> it = hitsByIp.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Long> e = it.next();
+                args.add(e.getKey());
+                args.add(Long.toString(e.getValue()));
+                if (args.size() == 2 * CHUNK_SIZE || !it.hasNext()) {
+                    keys.set(2, dayKey + ":batch:" + batchId + ":" + chunk++);
+                    args.add(0, ttlSeconds);
+                    args.add(1, markerTtlSeconds);
+                    redisTemplate.execute(FLUSH_SCRIPT, keys, args.toArray());
+                    args.clear();
+                }
+            }
+        }
+    }
+
+    private static final class Window {
+        private final LocalDate day;
+        private final long endMillis;
+        private final ConcurrentHashMap<String, LongAdder> hits = new ConcurrentHashMap<>();
+        private final HyperLogLog visitors = new HyperLogLog();
+        /**
+         * 正在写入这个窗口的请求线程数，分散在 {@link #WRITER_STRIPES} 个槽位中。同一次写入的登记和注销在同一个槽位，
+         * 逐个读取槽位时，读到 0 的槽位中确实没有线程在写入；{@link LongAdder} 的两次更新可能落在不同的单元中，不能这样用。
+         */
+        private final AtomicLongArray writers = new AtomicLongArray(WRITER_STRIPES * STRIPE_PADDING);
+
+        private Window(LocalDate day, long endMillis) {
+            this.day = day;
+            this.endMillis = endMillis;
+        }
+
+        private void enter(int stripe) {
+            writers.getAndIncrement(stripe * STRIPE_PADDING);
+        }
+
+        private void exit(int stripe) {
+            writers.getAndDecrement(stripe * STRIPE_PADDING);
+        }
+
+        private boolean hasWriters() {
+            for (int i = 0; i < WRITER_STRIPES; i++) {
+                if (writers.get(i * STRIPE_PADDING) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 一天中尚未写入 {@link Sink} 的一批增量，只由后台线程访问。
+     */
+    private static final class Delta {
+        private final LocalDate day;
+        private final String id = UUID.randomUUID().toString();
+        private final Map<String, Long> hits = new HashMap<>();
+        private final HyperLogLog visitors = new HyperLogLog();
+
+        private Delta(LocalDate day) {
+            this.day = day;
+        }
+    }
+
+    private final Sink sink;
+    private final ZoneId zoneId;
+    private final int maxPendingIps;
+    private final ScheduledExecutorService executor;
+
+    private volatile Window current;
+    /**
+     * 已换下、尚未合并的窗口，由 this 保护。
+     */
+    private final List<Window> retired = new ArrayList<>();
+    private final Object flushLock = new Object();
+    /**
+     * 每天正在累积的增量，由 flushLock 保护。
+     */
+    private final TreeMap<LocalDate, Delta> pending = new TreeMap<>();
+    /**
+     * 每天写入失败、等待原样重试的增量，由 flushLock 保护。
+     */
+    private final TreeMap<LocalDate, Delta> failed = new TreeMap<>();
+    /**
+     * 最近两天已合并窗口的访客，用于 {@link #estimateVisitors(LocalDate)}，在 this 中写入。
+     */
+    private final Map<LocalDate, HyperLogLog> dailyVisitors = new ConcurrentHashMap<>();
+
+    /**
+     * @param sink          接收增量的存储。
+     * @param zoneId        划分日期的时区。
+     * @param flushInterval 写入间隔。
+     * @param maxPendingIps 一个窗口中的 IP 数达到该值时提前写入，限制内存占用。
+     */
+    public ActivityStatsRecorder(Sink sink, ZoneId zoneId, Duration flushInterval, int maxPendingIps) {
+        if (maxPendingIps <= 0) {
+            throw new IllegalArgumentException("maxPendingIps must be positive");
+        }
+        this.sink = sink;
+        this.zoneId = zoneId;
+        this.maxPendingIps = maxPendingIps;
+        this.current = newWindow(System.currentTimeMillis());
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setName("activity-stats-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::rotateIfNeeded, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        scheduleDayChange();
+    }
+
+    /**
+     * 在当前窗口的日期结束时换窗口。请求线程不读取时钟（在一些虚拟机上比计数本身还慢），
+     * 因此零点之后、后台线程换窗口之前的少量访问仍计入前一天。
+     */
+    private void scheduleDayChange() {
+        long delayMillis = Math.max(0, current.endMillis - System.currentTimeMillis());
+        try {
+            executor.schedule(() -> {
+                rotateIfNeeded();
+                scheduleDayChange();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // 已关闭
+        }
+    }
+
+    private Window newWindow(long nowMillis) {
+        LocalDate day = Instant.ofEpochMilli(nowMillis).atZone(zoneId).toLocalDate();
+        return new Window(day, day.plusDays(1).atStartOfDay(zoneId).toInstant().toEpochMilli());
+    }
+
+    @Override
+    public void recordAccess(String ipAddress) {
+        if (ipAddress == null) {
+            return;
+        }
+        int stripe = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32) & (WRITER_STRIPES - 1);
+        Window window = current;
+        window.enter(stripe);
+        // 先登记再确认窗口没有换下：后台线程换下窗口后才检查 writers，两者必有一方看到对方
+        while (window != current) {
+            window.exit(stripe);
+            window = current;
+            window.enter(stripe);
+        }
+        try {
+            LongAdder adder = window.hits.get(ipAddress);
+            if (adder == null) {
+                adder = window.hits.computeIfAbsent(ipAddress, k -> new LongAdder());
+                window.visitors.add(ipAddress);
+                if (window.hits.size() >= maxPendingIps) {
+                    rotate(window);
+                }
+            }
+            adder.increment();
+        } finally {
+            window.exit(stripe);
+        }
+    }
+
+    /**
+     * 当前窗口仍是 {@code expected} 时换成新窗口，并安排合并旧窗口。
+     */
+    private synchronized Window rotate(Window expected) {
+        if (current == expected) {
+            retired.add(expected);
+            current = newWindow(System.currentTimeMillis());
+            scheduleFlush(0);
+        }
+        return current;
+    }
+
+    private void rotateIfNeeded() {
+        Window window = current;
+        if (!window.hits.isEmpty() || System.currentTimeMillis() >= window.endMillis) {
+            rotate(window);
+        }
+    }
+
+    /**
+     * 合并已经没有请求线程写入的旧窗口，按日期写入 {@link Sink}。
+     *
+     * @param force 不等待请求线程，合并所有旧窗口，只在关闭时使用。
+     * @return 是否还有旧窗口未合并。
+     */
+    private boolean flushRetired(boolean force) {
+        boolean remaining = false;
+        try {
+            List<Window> ready = new ArrayList<>();
+            synchronized (this) {
+                for (Iterator<Window> it = retired.iterator(); it.hasNext(); ) {
+                    Window window = it.next();
+                    if (force || !window.hasWriters()) {
+                        ready.add(window);
+                        it.remove();
+                        // 与移除在同一个锁中，estimateVisitors() 不会漏掉这个窗口
+                        if (!window.hits.isEmpty()) {
+                            dailyVisitors.computeIfAbsent(window.day, d -> new HyperLogLog()).merge(window.visitors);
+                        }
+                    }
+                }
+                remaining = !retired.isEmpty();
+            }
+            synchronized (flushLock) {
+                for (Window window : ready) {
+                    if (window.hits.isEmpty()) {
+                        continue;
+                    }
+                    Delta delta = pending.computeIfAbsent(window.day, Delta::new);
+                    window.hits.forEach((ip, adder) -> delta.hits.merge(ip, adder.sum(), Long::sum));
+                    delta.visitors.merge(window.visitors);
+                }
+                LocalDate oldest = current.day.minusDays(1);
+                dailyVisitors.keySet().removeIf(day -> day.isBefore(oldest));
+                TreeSet<LocalDate> days = new TreeSet<>(pending.keySet());
+                days.addAll(failed.keySet());
+                for (LocalDate day : days) {
+                    Delta retry = failed.remove(day);
+                    if (retry != null) {
+                        flush(retry, oldest);
+                        if (failed.containsKey(day)) {
+                            // 上一批的结果未知，新增量与它合并会使重试无法去重，等它写入后再写
+                            continue;
+                        }
+                    }
+                    Delta delta = pending.remove(day);
+                    if (delta != null) {
+                        flush(delta, oldest);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to flush activity stats", e);
+        }
+        return remaining;
+    }
+
+    /**
+     * 在后台线程中合并旧窗口，还有请求线程在写入的窗口稍后再试。
+     */
+    private void scheduleFlush(long delayMillis) {
+        try {
+            executor.schedule(() -> {
+                if (flushRetired(false)) {
+                    scheduleFlush(RETRY_MILLIS);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // 已关闭，由 close() 合并
+        }
+    }
+
+    /**
+     * 写入一批增量，失败时放入 {@link #failed}，早于 {@code oldest} 的丢弃。
+     */
+    private void flush(Delta delta, LocalDate oldest) {
+        try {
+            sink.flush(delta.day, delta.id, delta.hits, delta.visitors);
+        } catch (Exception e) {
+            if (delta.day.isBefore(oldest)) {
+                log.error("Failed to flush activity stats of {}, dropping {} IPs", delta.day, delta.hits.size(), e);
+            } else {
+                log.warn("Failed to flush activity stats of {}, will retry", delta.day, e);
+                failed.put(delta.day, delta);
+            }
+        }
+    }
+
+    /**
+     * 估计某天在本实例上的访客数，包括尚未写入 {@link Sink} 的部分。只保留今天和昨天的数据，更早的日期返回 0。
+     */
+    public long estimateVisitors(LocalDate day) {
+        HyperLogLog ret = new HyperLogLog();
+        HyperLogLog flushed = dailyVisitors.get(day);
+        if (flushed != null) {
+            ret.merge(flushed);
+        }
+        synchronized (this) {
+            for (Window window : retired) {
+                if (window.day.equals(day)) {
+                    ret.merge(window.visitors);
+                }
+            }
+            if (current.day.equals(day)) {
+                ret.merge(current.visitors);
+            }
+        }
+        return ret.estimate();
+    }
+
+    /**
+     * 停止后台线程并写入剩余的增量，之后的访问不再统计。
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        synchronized (this) {
+            retired.add(current);
+            current = newWindow(System.currentTimeMillis());
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+        while (flushRetired(false) && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        flushRetired(true);
+    }
+}
@@ -0,0 +1,470 @@
+package xyz.hyrio.common.tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文件散列值缓存，以路径、文件大小、修改时间和文件标识（inode 等）判断文件是否变化，文件未变化时直接返回保存的散列值。
+ * <p>
+ * 缓存可以持久化到一个只追加的索引文件中，重启后重新加载；索引中的过期记录过多时会自动压缩。
+ * 通过 {@link #watch(Path)} 监视的文件在修改、替换或删除时主动失效，命中时连文件属性也不再读取，完全没有 I/O；
+ * 文件变化到收到通知之间（取决于操作系统，Linux 上通常很短）仍可能返回旧的散列值。
+ * 一个缓存只用一个 {@link WatchService} 和一个监视线程，每个目录只注册一次，被监视的文件再多也不会耗尽 inotify 实例。
+ *
+ * @see Digester#digestFile(Path, Digester.Algorithm...)
+ */
+public class DigestCache implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(DigestCache.class);
+
+    private static final int MAGIC = 0x48444358; // "HDCX"
+    private static final byte VERSION = 1;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+
+    /**
+     * 索引中的记录数超过该值，且超过有效条目数的两倍时压缩索引。
+     */
+    private static final int COMPACTION_MIN_RECORDS = 1024;
+
+    private static final Digester.Algorithm[] ALGORITHMS = Digester.Algorithm.values();
+
+    private record Entry(long size, long lastModifiedNanos, String fileKey, Map<Digester.Algorithm, String> digests) {
+        private boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size()
+                   && lastModifiedNanos == attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                   && fileKey.equals(fileKeyOf(attrs));
+        }
+    }
+
+    private final Path indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * 被监视的文件（{@link #keyOf(Path)}），命中时不检查文件属性。
+     */
+    private final Set<String> watched = ConcurrentHashMap.newKeySet();
+    /**
+     * 被监视的目录和其中被监视的文件名，由 watchLock 保护修改。
+     */
+    private final Map<Path, Set<Path>> watchedDirs = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+    private final Object watchLock = new Object();
+    private WatchService watchService;
+    private boolean closed;
+    /**
+     * 每次失效加一。计算散列期间发生过失效时，结果写入后会被撤回，以免覆盖失效通知，把旧的散列值留在被监视的文件上。
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    private final Object indexLock = new Object();
+    private DataOutputStream indexOut;
+    private int indexRecords;
+
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * 创建只在内存中保存的缓存。
+     */
+    public DigestCache() {
+        this.indexFile = null;
+    }
+
+    /**
+     * 创建持久化到 {@code indexFile} 的缓存，文件存在时加载其中的记录。
+     */
+    public DigestCache(Path indexFile) throws IOException {
+        this.indexFile = indexFile;
+        synchronized (indexLock) {
+            load();
+            if (indexRecords > COMPACTION_MIN_RECORDS && indexRecords > entries.size() * 2) {
+                compactIndex();
+            } else {
+                openIndex();
+            }
+        }
+    }
+
+    private static String keyOf(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static String fileKeyOf(BasicFileAttributes attrs) {
+        Object fileKey = attrs.fileKey();
+        return fileKey == null ? "" : fileKey.toString();
+    }
+
+    /**
+     * 获取文件的散列值，文件未变化时直接返回缓存的结果。
+     */
+    public String get(Path file, Digester.Algorithm algorithm) throws IOException {
+        return get(file, new Digester.Algorithm[]{algorithm}).get(algorithm);
+    }
+
+    /**
+     * 获取文件的多个散列值，缓存中缺少的算法会一次性并行计算。
+     */
+    public Map<Digester.Algorithm, String> get(Path file, Digester.Algorithm... algorithms) throws IOException {
+        if (algorithms.length == 0) {
+            throw new IllegalArgumentException("at least one algorithm is required");
+        }
+        String key = keyOf(file);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.digests.keySet().containsAll(Arrays.asList(algorithms))) {
+            if (watched.contains(key) || entry.matches(Files.readAttributes(file, BasicFileAttributes.class))) {
+                hitCount.increment();
+                return entry.digests;
+            }
+        }
+        missCount.increment();
+
+        long invalidationsBefore = invalidations.get();
+        BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+        Map<Digester.Algorithm, String> digests = new EnumMap<>(Digester.Algorithm.class);
+        Digester.Algorithm[] missing;
+        if (entry != null && entry.matches(before)) {
+            digests.putAll(entry.digests);
+            missing = Arrays.stream(algorithms).filter(a -> !entry.digests.containsKey(a)).distinct().toArray(Digester.Algorithm[]::new);
+        } else {
+            missing = Arrays.stream(algorithms).distinct().toArray(Digester.Algorithm[]::new);
+        }
+        Digester digester = Digester.digestFile(file, missing);
+        for (Digester.Algorithm algorithm : missing) {
+            digests.put(algorithm, digester.getHex(algorithm));
+        }
+        Map<Digester.Algorithm, String> ret = Collections.unmodifiableMap(digests);
+
+        BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+        Entry newEntry = new Entry(before.size(), before.lastModifiedTime().to(TimeUnit.NANOSECONDS), fileKeyOf(before), ret);
+        if (newEntry.matches(after)) {
+            entries.put(key, newEntry);
+            append(key, newEntry);
+            if (invalidations.get() != invalidationsBefore && entries.remove(key, newEntry)) {
+                append(key, null);
+            }
+        } else {
+            log.debug("File {} changed while being digested, result not cached", file);
+        }
+        return ret;
+    }
+
+    /**
+     * 使文件的缓存失效，可直接用作 {@link FileModificationWatcher} 的回调。
+     */
+    public void invalidate(Path file) {
+        String key = keyOf(file);
+        invalidations.incrementAndGet();
+        if (entries.remove(key) != null) {
+            append(key, null);
+        }
+    }
+
+    /**
+     * 监视文件，文件修改、被替换或删除时自动使其缓存失效；被监视的文件命中缓存时不再检查文件属性。
+     * 文件不存在时不会创建，等它出现后再计算。文件所在的目录必须存在；目录被删除后其中的文件不再被监视。
+     */
+    public void watch(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        Path dir = path.getParent();
+        if (dir == null) {
+            throw new IllegalArgumentException("cannot watch a root directory: " + file);
+        }
+        String key = path.toString();
+        synchronized (watchLock) {
+            if (closed) {
+                throw new IllegalStateException("digest cache is closed");
+            }
+            if (watched.contains(key)) {
+                return;
+            }
+            if (watchService == null) {
+                watchService = dir.getFileSystem().newWatchService();
+                Thread thread = new Thread(() -> processEvents(watchService));
+                thread.setName("digest-cache-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            if (!watchKeys.containsKey(dir)) {
+                watchKeys.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+            }
+            watchedDirs.computeIfAbsent(dir, d -> ConcurrentHashMap.newKeySet()).add(path.getFileName());
+            watched.add(key);
+        }
+        // 开始监视之前的变化收不到通知
+        invalidate(path);
+    }
+
+    /**
+     * 停止监视文件，之后命中缓存时重新检查文件属性。目录中没有其他被监视的文件时取消对目录的注册。
+     */
+    public void unwatch(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        Path dir = path.getParent();
+        synchronized (watchLock) {
+            if (!watched.remove(path.toString()) || dir == null) {
+                return;
+            }
+            Set<Path> names = watchedDirs.get(dir);
+            if (names != null && names.remove(path.getFileName()) && names.isEmpty()) {
+                watchedDirs.remove(dir);
+                WatchKey watchKey = watchKeys.remove(dir);
+                if (watchKey != null) {
+                    watchKey.cancel();
+                }
+            }
+        }
+    }
+
+    private void processEvents(WatchService watchService) {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) watchKey.watchable();
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // 丢失了事件，不知道哪些文件变了
+                    invalidateDir(dir);
+                } else if (event.context() instanceof Path name) {
+                    Set<Path> names = watchedDirs.get(dir);
+                    if (names != null && names.contains(name)) {
+                        invalidate(dir.resolve(name));
+                    }
+                }
+            }
+            if (!watchKey.reset()) {
+                log.warn("Directory {} is no longer accessible, its files are no longer watched", dir);
+                synchronized (watchLock) {
+                    if (watchKeys.get(dir) == watchKey) {
+                        watchKeys.remove(dir);
+                        Set<Path> names = watchedDirs.remove(dir);
+                        if (names != null) {
+                            names.forEach(name -> watched.remove(dir.resolve(name).toString()));
+                        }
+                    }
+                }
+                invalidateDir(dir);
+            }
+        }
+    }
+
+    private void invalidateDir(Path dir) {
+        for (String key : entries.keySet()) {
+            Path file = dir.getFileSystem().getPath(key);
+            if (dir.equals(file.getParent())) {
+                invalidate(file);
+            }
+        }
+    }
+
+    // Index
+
+    private void load() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        long validLength = 0;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Files.newInputStream(indexFile)));
+             DataInputStream in = new DataInputStream(counter)) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("not a digest cache index: " + indexFile);
+            }
+            validLength = counter.count;
+            while (true) {
+                byte type = in.readByte();
+                String key = in.readUTF();
+                if (type == RECORD_PUT) {
+                    long size = in.readLong();
+                    long lastModifiedNanos = in.readLong();
+                    String fileKey = in.readUTF();
+                    int n = in.readUnsignedByte();
+                    Map<Digester.Algorithm, String> digests = new EnumMap<>(Digester.Algorithm.class);
+                    for (int i = 0; i < n; i++) {
+                        int ordinal = in.readUnsignedByte();
+                        String digest = in.readUTF();
+                        if (ordinal >= ALGORITHMS.length) {
+                            throw new IOException("unknown algorithm in digest cache index: " + ordinal);
+                        }
+                        digests.put(ALGORITHMS[ordinal], digest);
+                    }
+                    entries.put(key, new Entry(size, lastModifiedNanos, fileKey, Collections.unmodifiableMap(digests)));
+                } else if (type == RECORD_REMOVE) {
+                    entries.remove(key);
+                } else {
+                    throw new IOException("unknown record type in digest cache index: " + type);
+                }
+                indexRecords++;
+                validLength = counter.count;
+            }
+        } catch (EOFException e) {
+            // 正常结束，或最后一条记录写入不完整
+        }
+        if (validLength < Files.size(indexFile)) {
+            log.warn("Digest cache index {} has a torn tail, truncating to {} bytes", indexFile, validLength);
+            try (RandomAccessFile raf = new RandomAccessFile(indexFile.toFile(), "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        log.info("Loaded {} digest cache entries from {}", entries.size(), indexFile);
+    }
+
+    private void openIndex() throws IOException {
+        boolean isNew = !Files.exists(indexFile) || Files.size(indexFile) == 0;
+        indexOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        if (isNew) {
+            indexOut.writeInt(MAGIC);
+            indexOut.writeByte(VERSION);
+            indexOut.flush();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, String key, Entry entry) throws IOException {
+        if (entry == null) {
+            out.writeByte(RECORD_REMOVE);
+            out.writeUTF(key);
+            return;
+        }
+        out.writeByte(RECORD_PUT);
+        out.writeUTF(key);
+        out.writeLong(entry.size);
+        out.writeLong(entry.lastModifiedNanos);
+        out.writeUTF(entry.fileKey);
+        out.writeByte(entry.digests.size());
+        for (Map.Entry<Digester.Algorithm, String> digest : entry.digests.entrySet()) {
+            out.writeByte(digest.getKey().ordinal());
+            out.writeUTF(digest.getValue());
+        }
+    }
+
+    private void append(String key, Entry entry) {
+        if (indexFile == null) {
+            return;
+        }
+        synchronized (indexLock) {
+            if (indexOut == null) {
+                return;
+            }
+            try {
+                writeRecord(indexOut, key, entry);
+                indexOut.flush();
+                indexRecords++;
+                if (indexRecords > COMPACTION_MIN_RECORDS && indexRecords > entries.size() * 2) {
+                    compactIndex();
+                }
+            } catch (IOException e) {
+                log.warn("Failed to write digest cache index {}", indexFile, e);
+            }
+        }
+    }
+
+    /**
+     * 用当前的有效条目重写索引文件，去掉过期的记录。
+     */
+    public void compact() throws IOException {
+        if (indexFile == null) {
+            return;
+        }
+        synchronized (indexLock) {
+            compactIndex();
+        }
+    }
+
+    private void compactIndex() throws IOException {
+        if (indexOut != null) {
+            indexOut.close();
+            indexOut = null;
+        }
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        int records = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                writeRecord(out, e.getKey(), e.getValue());
+                records++;
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Compacted digest cache index {} from {} to {} records", indexFile, indexRecords, records);
+        indexRecords = records;
+        openIndex();
+    }
+
+    /**
+     * 停止所有监视，并关闭索引文件。
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (watchLock) {
+            closed = true;
+            watched.clear();
+            watchedDirs.clear();
+            watchKeys.clear();
+            if (watchService != null) {
+                // 监视线程收到 ClosedWatchServiceException 后退出
+                watchService.close();
+                watchService = null;
+            }
+        }
+        synchronized (indexLock) {
+            if (indexOut != null) {
+                indexOut.close();
+                indexOut = null;
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
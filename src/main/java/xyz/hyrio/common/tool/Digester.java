@@ -1,11 +1,32 @@
 package xyz.hyrio.common.tool;
 
+import xyz.hyrio.common.util.CodecUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
 
 /**
  * 散列值计算器，可用于计算字节数组（或字符串）的散列值（MD5、SHA-1、SHA-256、CRC32）。
+ * 另提供 CRC32C、xxHash64、MurmurHash3-128 等非密码学散列，适用于去重键、缓存键、ETag 等不需要密码学强度的场景。
  *
  * @author Hyrio 2013-01-03
  */
@@ -18,6 +39,36 @@ public class Digester {
     private static final char[] HEX_CHARS_UPPER_CASE = HEX_CHARS_UPPER_CASE_STR.toCharArray();
     private static final char[] HEX_CHARS_LOWER_CASE = HEX_CHARS_UPPER_CASE_STR.toLowerCase().toCharArray();
 
+    /**
+     * 将字节数组转换为十六进制字符并写入调用方提供的字符数组。
+     *
+     * @return 写入的字符数。
+     */
+    public static int encodeHex(byte[] bytes, int offset, int len, char[] dst, int dstOffset, boolean lowerCase) {
+        char[] HEX_CHARS = lowerCase ? HEX_CHARS_LOWER_CASE : HEX_CHARS_UPPER_CASE;
+        for (int i = 0; i < len; i++) {
+            byte b = bytes[offset + i];
+            dst[dstOffset++] = HEX_CHARS[(b >>> 4) & 0x0F];
+            dst[dstOffset++] = HEX_CHARS[b & 0x0F];
+        }
+        return len * 2;
+    }
+
+    /**
+     * 将字节数组转换为十六进制字符并以 ASCII 编码写入调用方提供的字节数组。
+     *
+     * @return 写入的字节数。
+     */
+    public static int encodeHex(byte[] bytes, int offset, int len, byte[] dst, int dstOffset, boolean lowerCase) {
+        char[] HEX_CHARS = lowerCase ? HEX_CHARS_LOWER_CASE : HEX_CHARS_UPPER_CASE;
+        for (int i = 0; i < len; i++) {
+            byte b = bytes[offset + i];
+            dst[dstOffset++] = (byte) HEX_CHARS[(b >>> 4) & 0x0F];
+            dst[dstOffset++] = (byte) HEX_CHARS[b & 0x0F];
+        }
+        return len * 2;
+    }
+
     /**
      * 将字节数组转换为十六进制字符串。
      *
@@ -25,22 +76,45 @@ public class Digester {
      * @return 转换后的十六进制字符串。
      */
     private static String encodeHex(byte[] bytes, boolean lowerCase) {
-        char[] HEX_CHARS = lowerCase ? HEX_CHARS_LOWER_CASE : HEX_CHARS_UPPER_CASE;
-        StringBuilder ret = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            ret.append(HEX_CHARS[(b >>> 4) & 0x0F]).append(HEX_CHARS[b & 0x0F]);
-        }
-        return ret.toString();
+        char[] ret = new char[bytes.length * 2];
+        encodeHex(bytes, 0, bytes.length, ret, 0, lowerCase);
+        return new String(ret);
+    }
+
+    /**
+     * 将数值的低 {@code bytes} 个字节按大端序转换为十六进制字符串。
+     */
+    private static String encodeHex(long value, int bytes, boolean lowerCase) {
+        byte[] ret = new byte[bytes];
+        putLong(value, bytes, ret, 0);
+        return encodeHex(ret, lowerCase);
     }
 
     public enum Algorithm {
-        MD5, SHA1, SHA256, CRC32
+        MD5, SHA1, SHA256, CRC32,
+        /**
+         * CRC-32C（Castagnoli），由 {@link java.util.zip.CRC32C} 实现，可使用 CPU 的硬件指令加速。
+         */
+        CRC32C,
+        /**
+         * xxHash64，种子为 0。
+         */
+        XXHASH64,
+        /**
+         * MurmurHash3 x64 128 位，种子为 0。
+         */
+        MURMUR3_128
     }
 
+    private static final Algorithm[] ALGORITHMS = Algorithm.values();
+
     private final MessageDigest md5;
     private final MessageDigest sha1;
     private final MessageDigest sha256;
     private final CRC32 crc32;
+    private final CRC32C crc32c;
+    private final XxHash64 xxHash64;
+    private final Murmur3Hash128 murmur3;
     private final Algorithm[] algorithms;
     private boolean closed = false;
 
@@ -55,14 +129,13 @@ public class Digester {
 
     public Digester(Algorithm... algorithms) {
         this.algorithms = algorithms;
-        try {
-            md5 = isEnabled(Algorithm.MD5) ? MessageDigest.getInstance("MD5") : null;
-            sha1 = isEnabled(Algorithm.SHA1) ? MessageDigest.getInstance("SHA-1") : null;
-            sha256 = isEnabled(Algorithm.SHA256) ? MessageDigest.getInstance("SHA-256") : null;
-            crc32 = isEnabled(Algorithm.CRC32) ? new CRC32() : null;
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("error initializing digester", e);
-        }
+        md5 = isEnabled(Algorithm.MD5) ? newMessageDigest(Algorithm.MD5) : null;
+        sha1 = isEnabled(Algorithm.SHA1) ? newMessageDigest(Algorithm.SHA1) : null;
+        sha256 = isEnabled(Algorithm.SHA256) ? newMessageDigest(Algorithm.SHA256) : null;
+        crc32 = isEnabled(Algorithm.CRC32) ? new CRC32() : null;
+        crc32c = isEnabled(Algorithm.CRC32C) ? new CRC32C() : null;
+        xxHash64 = isEnabled(Algorithm.XXHASH64) ? new XxHash64() : null;
+        murmur3 = isEnabled(Algorithm.MURMUR3_128) ? new Murmur3Hash128() : null;
     }
 
     public Digester() {
@@ -89,6 +162,62 @@ public class Digester {
         if (crc32 != null) {
             crc32.update(bytes, offset, len);
         }
+        if (crc32c != null) {
+            crc32c.update(bytes, offset, len);
+        }
+        if (xxHash64 != null) {
+            xxHash64.update(bytes, offset, len);
+        }
+        if (murmur3 != null) {
+            murmur3.update(bytes, offset, len);
+        }
+        return this;
+    }
+
+    public Digester update(byte b) {
+        if (closed) {
+            throw new IllegalStateException("digester is closed");
+        }
+        if (md5 != null) {
+            md5.update(b);
+        }
+        if (sha1 != null) {
+            sha1.update(b);
+        }
+        if (sha256 != null) {
+            sha256.update(b);
+        }
+        if (crc32 != null) {
+            crc32.update(b);
+        }
+        if (crc32c != null) {
+            crc32c.update(b);
+        }
+        if (xxHash64 != null) {
+            xxHash64.update(b);
+        }
+        if (murmur3 != null) {
+            murmur3.update(b);
+        }
+        return this;
+    }
+
+    /**
+     * 使用 {@code buffer} 中 position 到 limit 之间的数据更新散列值，结束后 position 等于 limit。
+     * 直接缓冲区（包括内存映射的文件）不会被复制到堆上。
+     */
+    public Digester update(ByteBuffer buffer) {
+        if (closed) {
+            throw new IllegalStateException("digester is closed");
+        }
+        int position = buffer.position();
+        for (Algorithm algorithm : ALGORITHMS) {
+            if (isEnabled(algorithm)) {
+                buffer.position(position);
+                update(algorithm, buffer);
+            }
+        }
+        buffer.position(buffer.limit());
         return this;
     }
 
@@ -96,8 +225,11 @@ public class Digester {
         return update(bytes, 0, bytes.length);
     }
 
+    /**
+     * 使用字符串的 UTF-8 编码更新散列值。
+     */
     public Digester update(String str) {
-        return update(str.getBytes());
+        return update(str.getBytes(StandardCharsets.UTF_8));
     }
 
     public String getMD5() {
@@ -117,12 +249,75 @@ public class Digester {
 
     public String getCRC32() {
         close();
-        long digest = crc32.getValue();
-        byte[] bytes = new byte[Integer.BYTES];
-        for (int i = 0; i < Integer.BYTES; i++) {
-            bytes[i] = (byte) (digest >>> ((Integer.BYTES - 1 - i) * Byte.SIZE));
+        return encodeHex(crc32.getValue(), Integer.BYTES, false);
+    }
+
+    public String getCRC32C() {
+        close();
+        return encodeHex(crc32c.getValue(), Integer.BYTES, false);
+    }
+
+    public String getXxHash64() {
+        close();
+        return encodeHex(xxHash64.getValue(), Long.BYTES, true);
+    }
+
+    public String getMurmur3_128() {
+        return encodeHex(getDigest(Algorithm.MURMUR3_128), true);
+    }
+
+    /**
+     * 获取指定算法的十六进制结果，与 {@link #getMD5()} 等方法的输出一致。
+     */
+    public String getHex(Algorithm algorithm) {
+        return switch (algorithm) {
+            case MD5 -> getMD5();
+            case SHA1 -> getSHA1();
+            case SHA256 -> getSHA256();
+            case CRC32 -> getCRC32();
+            case CRC32C -> getCRC32C();
+            case XXHASH64 -> getXxHash64();
+            case MURMUR3_128 -> getMurmur3_128();
+        };
+    }
+
+    /**
+     * 获取指定算法的原始结果，数值型的算法（CRC32 等）按大端序输出。
+     */
+    public byte[] getDigest(Algorithm algorithm) {
+        close();
+        byte[] ret;
+        switch (algorithm) {
+            case MD5 -> ret = md5.digest();
+            case SHA1 -> ret = sha1.digest();
+            case SHA256 -> ret = sha256.digest();
+            case MURMUR3_128 -> {
+                ret = new byte[getDigestLength(algorithm)];
+                murmur3.getValue(ret, 0);
+            }
+            default -> {
+                long value = switch (algorithm) {
+                    case CRC32 -> crc32.getValue();
+                    case CRC32C -> crc32c.getValue();
+                    default -> xxHash64.getValue();
+                };
+                ret = new byte[getDigestLength(algorithm)];
+                putLong(value, ret.length, ret, 0);
+            }
+        }
+        return ret;
+    }
+
+    private void update(Algorithm algorithm, ByteBuffer buffer) {
+        switch (algorithm) {
+            case MD5 -> md5.update(buffer);
+            case SHA1 -> sha1.update(buffer);
+            case SHA256 -> sha256.update(buffer);
+            case CRC32 -> crc32.update(buffer);
+            case CRC32C -> crc32c.update(buffer);
+            case XXHASH64 -> xxHash64.update(buffer);
+            case MURMUR3_128 -> murmur3.update(buffer);
         }
-        return encodeHex(bytes, false);
     }
 
     public void reset() {
@@ -138,38 +333,399 @@ public class Digester {
         if (crc32 != null) {
             crc32.reset();
         }
+        if (crc32c != null) {
+            crc32c.reset();
+        }
+        if (xxHash64 != null) {
+            xxHash64.reset();
+        }
+        if (murmur3 != null) {
+            murmur3.reset();
+        }
         closed = false;
     }
 
+    // Pooled fast path
+
+    /**
+     * 字符串编码后超过该长度时不再使用线程本地缓冲区，避免每个线程长期占用大块内存。
+     */
+    private static final int MAX_POOLED_TEXT_BYTES = 16 * 1024;
+
+    private static final int MAX_DIGEST_LENGTH = 32;
+
+    /**
+     * 每个线程复用的算法实例和缓冲区，使静态方法在稳定状态下除返回值外不再分配内存。
+     */
+    private static final class LocalState {
+        private final MessageDigest[] messageDigests = new MessageDigest[ALGORITHMS.length];
+        private final CRC32 crc32 = new CRC32();
+        private final CRC32C crc32c = new CRC32C();
+        private final XxHash64 xxHash64 = new XxHash64();
+        private final Murmur3Hash128 murmur3 = new Murmur3Hash128();
+        private final byte[] digest = new byte[MAX_DIGEST_LENGTH];
+        private byte[] text = new byte[256];
+
+        private MessageDigest getMessageDigest(Algorithm algorithm) {
+            MessageDigest md = messageDigests[algorithm.ordinal()];
+            if (md == null) {
+                md = newMessageDigest(algorithm);
+                messageDigests[algorithm.ordinal()] = md;
+            }
+            return md;
+        }
+
+        /**
+         * 将字符串按 UTF-8 编码到 {@link #text} 中，过长时返回 -1。
+         */
+        private int encode(String str) {
+            int maxBytes = str.length() * CodecUtils.MAX_UTF8_BYTES_PER_CHAR;
+            if (maxBytes > MAX_POOLED_TEXT_BYTES) {
+                return -1;
+            }
+            if (text.length < maxBytes) {
+                text = new byte[Math.min(Math.max(maxBytes, text.length * 2), MAX_POOLED_TEXT_BYTES)];
+            }
+            return CodecUtils.encodeUtf8(str, text, 0);
+        }
+    }
+
+    private static final ThreadLocal<LocalState> LOCAL_STATE = ThreadLocal.withInitial(LocalState::new);
+
+    private static MessageDigest newMessageDigest(Algorithm algorithm) {
+        try {
+            return switch (algorithm) {
+                case MD5 -> MessageDigest.getInstance("MD5");
+                case SHA1 -> MessageDigest.getInstance("SHA-1");
+                case SHA256 -> MessageDigest.getInstance("SHA-256");
+                default -> throw new IllegalArgumentException("not a message digest algorithm: " + algorithm);
+            };
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("error initializing digester", e);
+        }
+    }
+
+    /**
+     * 获取算法结果的字节数。
+     */
+    public static int getDigestLength(Algorithm algorithm) {
+        return switch (algorithm) {
+            case MD5, MURMUR3_128 -> 16;
+            case SHA1 -> 20;
+            case SHA256 -> 32;
+            case CRC32, CRC32C -> Integer.BYTES;
+            case XXHASH64 -> Long.BYTES;
+        };
+    }
+
+    /**
+     * CRC32 和 CRC32C 一直以大写十六进制输出，其他算法为小写。
+     */
+    private static boolean isHexLowerCase(Algorithm algorithm) {
+        return algorithm != Algorithm.CRC32 && algorithm != Algorithm.CRC32C;
+    }
+
+    private static void putLong(long value, int bytes, byte[] out, int outOffset) {
+        for (int i = 0; i < bytes; i++) {
+            out[outOffset + i] = (byte) (value >>> ((bytes - 1 - i) * Byte.SIZE));
+        }
+    }
+
+    private static long checksum(LocalState state, Algorithm algorithm, byte[] bytes, int offset, int len) {
+        switch (algorithm) {
+            case CRC32 -> {
+                state.crc32.reset();
+                state.crc32.update(bytes, offset, len);
+                return state.crc32.getValue();
+            }
+            case CRC32C -> {
+                state.crc32c.reset();
+                state.crc32c.update(bytes, offset, len);
+                return state.crc32c.getValue();
+            }
+            case XXHASH64 -> {
+                state.xxHash64.reset();
+                state.xxHash64.update(bytes, offset, len);
+                return state.xxHash64.getValue();
+            }
+            default -> throw new IllegalArgumentException("not a checksum algorithm: " + algorithm);
+        }
+    }
+
+    private static int digest(LocalState state, Algorithm algorithm, byte[] bytes, int offset, int len, byte[] out, int outOffset) {
+        int digestLength = getDigestLength(algorithm);
+        if (out.length - outOffset < digestLength) {
+            throw new IllegalArgumentException("output buffer too small, " + digestLength + " bytes required");
+        }
+        switch (algorithm) {
+            case MD5, SHA1, SHA256 -> {
+                MessageDigest md = state.getMessageDigest(algorithm);
+                md.update(bytes, offset, len);
+                try {
+                    md.digest(out, outOffset, digestLength);
+                } catch (DigestException e) {
+                    throw new IllegalStateException("error computing digest", e);
+                }
+            }
+            case MURMUR3_128 -> {
+                state.murmur3.reset();
+                state.murmur3.update(bytes, offset, len);
+                state.murmur3.getValue(out, outOffset);
+            }
+            default -> putLong(checksum(state, algorithm, bytes, offset, len), digestLength, out, outOffset);
+        }
+        return digestLength;
+    }
+
+    /**
+     * 计算散列值并写入调用方提供的数组，不分配内存。
+     *
+     * @return 写入的字节数，即 {@link #getDigestLength(Algorithm)}。
+     */
+    public static int digest(Algorithm algorithm, byte[] bytes, int offset, int len, byte[] out, int outOffset) {
+        return digest(LOCAL_STATE.get(), algorithm, bytes, offset, len, out, outOffset);
+    }
+
+    public static byte[] digest(Algorithm algorithm, byte[] bytes) {
+        byte[] ret = new byte[getDigestLength(algorithm)];
+        digest(algorithm, bytes, 0, bytes.length, ret, 0);
+        return ret;
+    }
+
+    /**
+     * 计算字符串（UTF-8 编码）的散列值。
+     */
+    public static byte[] digest(Algorithm algorithm, String str) {
+        byte[] ret = new byte[getDigestLength(algorithm)];
+        LocalState state = LOCAL_STATE.get();
+        int len = state.encode(str);
+        if (len < 0) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            digest(state, algorithm, bytes, 0, bytes.length, ret, 0);
+        } else {
+            digest(state, algorithm, state.text, 0, len, ret, 0);
+        }
+        return ret;
+    }
+
+    /**
+     * 计算散列值，并将十六进制结果写入调用方提供的字符数组，不分配内存。
+     *
+     * @return 写入的字符数。
+     */
+    public static int digestToHex(Algorithm algorithm, byte[] bytes, int offset, int len, char[] dst, int dstOffset) {
+        LocalState state = LOCAL_STATE.get();
+        int digestLength = digest(state, algorithm, bytes, offset, len, state.digest, 0);
+        return encodeHex(state.digest, 0, digestLength, dst, dstOffset, isHexLowerCase(algorithm));
+    }
+
+    /**
+     * 计算字符串（UTF-8 编码）的散列值，并将十六进制结果写入调用方提供的字符数组。
+     *
+     * @return 写入的字符数。
+     */
+    public static int digestToHex(Algorithm algorithm, String str, char[] dst, int dstOffset) {
+        LocalState state = LOCAL_STATE.get();
+        int len = state.encode(str);
+        int digestLength;
+        if (len < 0) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            digestLength = digest(state, algorithm, bytes, 0, bytes.length, state.digest, 0);
+        } else {
+            digestLength = digest(state, algorithm, state.text, 0, len, state.digest, 0);
+        }
+        return encodeHex(state.digest, 0, digestLength, dst, dstOffset, isHexLowerCase(algorithm));
+    }
+
+    private static String digestToHex(Algorithm algorithm, byte[] bytes) {
+        char[] hex = new char[getDigestLength(algorithm) * 2];
+        digestToHex(algorithm, bytes, 0, bytes.length, hex, 0);
+        return new String(hex);
+    }
+
+    private static String digestToHex(Algorithm algorithm, String str) {
+        char[] hex = new char[getDigestLength(algorithm) * 2];
+        digestToHex(algorithm, str, hex, 0);
+        return new String(hex);
+    }
+
+    private static long checksum(Algorithm algorithm, String str) {
+        LocalState state = LOCAL_STATE.get();
+        int len = state.encode(str);
+        if (len < 0) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            return checksum(state, algorithm, bytes, 0, bytes.length);
+        }
+        return checksum(state, algorithm, state.text, 0, len);
+    }
+
     public static String getMD5(String str) {
-        return new Digester(Algorithm.MD5).update(str).getMD5();
+        return digestToHex(Algorithm.MD5, str);
     }
 
     public static String getSHA1(String str) {
-        return new Digester(Algorithm.SHA1).update(str).getSHA1();
+        return digestToHex(Algorithm.SHA1, str);
     }
 
     public static String getSHA256(String str) {
-        return new Digester(Algorithm.SHA256).update(str).getSHA256();
+        return digestToHex(Algorithm.SHA256, str);
     }
 
     public static String getCRC32(String str) {
-        return new Digester(Algorithm.CRC32).update(str).getCRC32();
+        return digestToHex(Algorithm.CRC32, str);
+    }
+
+    public static String getCRC32C(String str) {
+        return digestToHex(Algorithm.CRC32C, str);
+    }
+
+    public static String getXxHash64(String str) {
+        return digestToHex(Algorithm.XXHASH64, str);
+    }
+
+    public static String getMurmur3_128(String str) {
+        return digestToHex(Algorithm.MURMUR3_128, str);
     }
 
     public static String getMD5(byte[] bytes) {
-        return new Digester(Algorithm.MD5).update(bytes).getMD5();
+        return digestToHex(Algorithm.MD5, bytes);
     }
 
     public static String getSHA1(byte[] bytes) {
-        return new Digester(Algorithm.SHA1).update(bytes).getSHA1();
+        return digestToHex(Algorithm.SHA1, bytes);
     }
 
     public static String getSHA256(byte[] bytes) {
-        return new Digester(Algorithm.SHA256).update(bytes).getSHA256();
+        return digestToHex(Algorithm.SHA256, bytes);
     }
 
     public static String getCRC32(byte[] bytes) {
-        return new Digester(Algorithm.CRC32).update(bytes).getCRC32();
+        return digestToHex(Algorithm.CRC32, bytes);
+    }
+
+    public static String getCRC32C(byte[] bytes) {
+        return digestToHex(Algorithm.CRC32C, bytes);
+    }
+
+    public static String getXxHash64(byte[] bytes) {
+        return digestToHex(Algorithm.XXHASH64, bytes);
+    }
+
+    public static String getMurmur3_128(byte[] bytes) {
+        return digestToHex(Algorithm.MURMUR3_128, bytes);
+    }
+
+    public static long getCRC32Value(String str) {
+        return checksum(Algorithm.CRC32, str);
+    }
+
+    public static long getCRC32CValue(String str) {
+        return checksum(Algorithm.CRC32C, str);
+    }
+
+    public static long getXxHash64Value(String str) {
+        return checksum(Algorithm.XXHASH64, str);
+    }
+
+    public static long getCRC32Value(byte[] bytes) {
+        return checksum(LOCAL_STATE.get(), Algorithm.CRC32, bytes, 0, bytes.length);
+    }
+
+    public static long getCRC32CValue(byte[] bytes) {
+        return checksum(LOCAL_STATE.get(), Algorithm.CRC32C, bytes, 0, bytes.length);
+    }
+
+    public static long getXxHash64Value(byte[] bytes) {
+        return checksum(LOCAL_STATE.get(), Algorithm.XXHASH64, bytes, 0, bytes.length);
+    }
+
+    // File
+
+    /**
+     * 单次读取文件时每个映射块的大小。
+     */
+    private static final int FILE_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 同时在途的映射块数量上限，防止较快的算法领先太多导致页缓存被换出后重复读盘。
+     */
+    private static final int MAX_CHUNKS_IN_FLIGHT = 4;
+
+    private static final ExecutorService FILE_DIGEST_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "digester-worker-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * 计算文件的散列值。文件只会被读取一次（内存映射），每个映射块同时交给每个算法各自的工作线程处理，
+     * 因此总耗时接近最慢的算法，而不是所有算法耗时之和。
+     *
+     * @param path       要计算的文件。
+     * @param algorithms 要计算的算法，为空时计算 MD5、SHA-1、SHA-256、CRC32。
+     * @return 已更新完毕的散列值计算器，可通过 {@link #getMD5()} 等方法获取结果。
+     */
+    public static Digester digestFile(Path path, Algorithm... algorithms) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return digestFile(channel, algorithms);
+        }
+    }
+
+    /**
+     * 从文件通道的当前大小范围内计算散列值，通道不会被关闭。
+     *
+     * @see #digestFile(Path, Algorithm...)
+     */
+    public static Digester digestFile(FileChannel channel, Algorithm... algorithms) throws IOException {
+        Digester digester = algorithms.length == 0 ? new Digester() : new Digester(algorithms);
+        Algorithm[] enabled = Arrays.stream(digester.algorithms).distinct().toArray(Algorithm[]::new);
+        long size = channel.size();
+
+        if (enabled.length == 1 || size <= FILE_CHUNK_SIZE) {
+            for (long position = 0; position < size; position += FILE_CHUNK_SIZE) {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(FILE_CHUNK_SIZE, size - position));
+                for (Algorithm algorithm : enabled) {
+                    digester.update(algorithm, chunk.duplicate());
+                }
+            }
+            return digester;
+        }
+
+        // 每个算法一条串行的任务链，保证同一算法按顺序处理各个块；不同算法之间并行。
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Void>[] tails = new CompletableFuture[enabled.length];
+        for (int i = 0; i < enabled.length; i++) {
+            tails[i] = CompletableFuture.completedFuture(null);
+        }
+        Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>(MAX_CHUNKS_IN_FLIGHT + 1);
+        try {
+            for (long position = 0; position < size; position += FILE_CHUNK_SIZE) {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(FILE_CHUNK_SIZE, size - position));
+                for (int i = 0; i < enabled.length; i++) {
+                    Algorithm algorithm = enabled[i];
+                    tails[i] = tails[i].thenRunAsync(() -> digester.update(algorithm, chunk.duplicate()), FILE_DIGEST_EXECUTOR);
+                }
+                inFlight.addLast(CompletableFuture.allOf(tails));
+                if (inFlight.size() > MAX_CHUNKS_IN_FLIGHT) {
+                    inFlight.removeFirst().join();
+                }
+            }
+            CompletableFuture.allOf(tails).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException("error digesting file", cause);
+        }
+        return digester;
     }
 }
@@ -0,0 +1,86 @@
+package xyz.hyrio.common.tool;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 在读取的同时计算散列值的输入流，读取结束后即可从 {@link #getDigester()} 获取结果，无需再次读取数据。
+ * 可与 {@link ShowProgressInputStream} 等其他输入流互相嵌套使用。
+ *
+ * @see DigestingOutputStream
+ */
+public class DigestingInputStream extends InputStream {
+    private static final int SKIP_BUFFER_SIZE = 8192;
+
+    private final InputStream inputStream;
+    private final Digester digester;
+
+    public DigestingInputStream(InputStream inputStream, Digester digester) {
+        this.inputStream = inputStream;
+        this.digester = digester;
+    }
+
+    public DigestingInputStream(InputStream inputStream, Digester.Algorithm... algorithms) {
+        this(inputStream, algorithms.length == 0 ? new Digester() : new Digester(algorithms));
+    }
+
+    public Digester getDigester() {
+        return digester;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = inputStream.read();
+        if (read != -1) {
+            digester.update((byte) read);
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int readLen = inputStream.read(b, off, len);
+        if (readLen > 0) {
+            digester.update(b, off, readLen);
+        }
+        return readLen;
+    }
+
+    /**
+     * 跳过的字节同样需要计入散列值，因此这里会实际读取被跳过的数据。
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        byte[] buffer = new byte[(int) Math.min(SKIP_BUFFER_SIZE, n)];
+        long remaining = n;
+        while (remaining > 0) {
+            int readLen = read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (readLen < 0) {
+                break;
+            }
+            remaining -= readLen;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return inputStream.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * 散列值无法回退，因此不支持 mark/reset。
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,49 @@
+package xyz.hyrio.common.tool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 在写入的同时计算散列值的输出流，写入结束后即可从 {@link #getDigester()} 获取结果，无需再次读取数据。
+ *
+ * @see DigestingInputStream
+ */
+public class DigestingOutputStream extends OutputStream {
+    private final OutputStream outputStream;
+    private final Digester digester;
+
+    public DigestingOutputStream(OutputStream outputStream, Digester digester) {
+        this.outputStream = outputStream;
+        this.digester = digester;
+    }
+
+    public DigestingOutputStream(OutputStream outputStream, Digester.Algorithm... algorithms) {
+        this(outputStream, algorithms.length == 0 ? new Digester() : new Digester(algorithms));
+    }
+
+    public Digester getDigester() {
+        return digester;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        outputStream.write(b);
+        digester.update((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        outputStream.write(b, off, len);
+        digester.update(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+}
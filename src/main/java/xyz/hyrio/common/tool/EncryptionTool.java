@@ -4,46 +4,306 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static xyz.hyrio.common.util.CodecUtils.*;
 
 public class EncryptionTool {
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
     private static final String CIPHER_ALGORITHM = "AES/ECB/PKCS5Padding";
+    private static final int BLOCK_SIZE = 16;
 
-    private static final Base64.Encoder base64Encoder = Base64.getEncoder();
-    private static final Base64.Encoder base64UrlEncoder = Base64.getUrlEncoder();
     private static final Base64.Decoder base64Decoder = Base64.getDecoder();
-    private static final Base64.Decoder base64UrlDecoder = Base64.getUrlDecoder();
 
-    private final byte[] keyBytes;
-    private final Object encryptionLock = new Object(), decryptionLock = new Object();
-    private final Cipher encryptCipher, decryptCipher;
+    /**
+     * Scratch arrays larger than this are not kept in the pool.
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 16 * 1024;
+    private static final byte[] EMPTY_BUFFER = new byte[0];
+
+    /**
+     * An initialized cipher together with scratch arrays for the String and Base64 paths,
+     * so a pooled encryption allocates nothing but its result.
+     */
+    private static final class PooledCipher {
+        private final Cipher cipher;
+        private byte[] input = EMPTY_BUFFER, output = EMPTY_BUFFER;
+
+        private PooledCipher(Cipher cipher) {
+            this.cipher = cipher;
+        }
+
+        private byte[] input(int size) {
+            if (input.length >= size) {
+                return input;
+            }
+            byte[] buffer = new byte[size];
+            if (size <= MAX_POOLED_BUFFER_SIZE) {
+                input = buffer;
+            }
+            return buffer;
+        }
+
+        private byte[] output(int size) {
+            if (output.length >= size) {
+                return output;
+            }
+            byte[] buffer = new byte[size];
+            if (size <= MAX_POOLED_BUFFER_SIZE) {
+                output = buffer;
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * A lock-free pool of initialized ciphers for one key and mode.
+     * <p>
+     * {@link Cipher} is not thread-safe, but {@code doFinal} resets it to its initialized state,
+     * so a cipher can be reused by another thread once returned. Threads start probing at a slot derived
+     * from their id, so under steady load each thread keeps finding the cipher it returned last time
+     * and the slots are rarely contended. When every slot is empty a new cipher is created instead of waiting.
+     */
+    private static final class CipherPool {
+        private static final int SLOTS = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+
+        private final int mode;
+        private final SecretKeySpec keySpec;
+        private final AtomicReferenceArray<PooledCipher> slots = new AtomicReferenceArray<>(SLOTS);
+
+        private CipherPool(int mode, SecretKeySpec keySpec) {
+            this.mode = mode;
+            this.keySpec = keySpec;
+            release(newCipher());
+        }
+
+        private PooledCipher newCipher() {
+            try {
+                Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+                cipher.init(mode, keySpec);
+                return new PooledCipher(cipher);
+            } catch (NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException e) {
+                throw new RuntimeException("encryption algorithm not supported", e);
+            }
+        }
+
+        private static int probe() {
+            long id = Thread.currentThread().getId();
+            return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (SLOTS - 1);
+        }
+
+        private PooledCipher borrow() {
+            int start = probe();
+            for (int i = 0; i < SLOTS; i++) {
+                int index = (start + i) & (SLOTS - 1);
+                PooledCipher cipher = slots.get(index);
+                if (cipher != null && slots.compareAndSet(index, cipher, null)) {
+                    return cipher;
+                }
+            }
+            return newCipher();
+        }
+
+        /**
+         * Return a cipher after {@code doFinal}; it is dropped if all slots are taken.
+         * {@code doFinal} resets the cipher when it throws {@code BadPaddingException} or {@code IllegalBlockSizeException},
+         * so those ciphers are returned too; dropping them would make every rejected ciphertext pay for a new {@code Cipher.init}.
+         * A {@code ShortBufferException} from the cipher leaves it expecting a retry, such ciphers must not be returned.
+         */
+        private void release(PooledCipher cipher) {
+            int start = probe();
+            for (int i = 0; i < SLOTS; i++) {
+                int index = (start + i) & (SLOTS - 1);
+                if (slots.get(index) == null && slots.compareAndSet(index, null, cipher)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Keys
+
+    private static final int MAX_KEY_ID = 0xFF;
+
+    /**
+     * An immutable set of keys with ids from 0 to 255. Ciphertexts produced with a key ring start with the one-byte id
+     * of the key that encrypted them, so ciphertexts of older keys keep decrypting after the primary key is rotated.
+     * Ciphertexts without a key id, produced by a single-key {@link EncryptionTool}, are decrypted with the legacy key.
+     * <p>
+     * The id is recognized by the ciphertext length: without it a ciphertext is a whole number of AES blocks.
+     */
+    public static final class KeyRing {
+        private final int primaryKeyId;
+        private final Integer legacyKeyId;
+        private final Map<Integer, byte[]> keys = new TreeMap<>();
+
+        public int getPrimaryKeyId() {
+            return primaryKeyId;
+        }
+
+        public Integer getLegacyKeyId() {
+            return legacyKeyId;
+        }
+
+        public Set<Integer> getKeyIds() {
+            return Collections.unmodifiableSet(keys.keySet());
+        }
+
+        public KeyRing(int primaryKeyId, Map<Integer, String> keys) {
+            this(primaryKeyId, keys, null);
+        }
+
+        /**
+         * @param primaryKeyId The id of the key used for encryption.
+         * @param keys         Base64 encoded 16, 24 or 32-byte keys by id.
+         * @param legacyKeyId  The id of the key for ciphertexts without a key id, {@code null} to reject them.
+         */
+        public KeyRing(int primaryKeyId, Map<Integer, String> keys, Integer legacyKeyId) {
+            keys.forEach((id, key) -> {
+                if (id == null || id < 0 || id > MAX_KEY_ID) {
+                    throw new IllegalArgumentException("key id must be between 0 and " + MAX_KEY_ID + ": " + id);
+                }
+                this.keys.put(id, decodeKey(key));
+            });
+            if (!this.keys.containsKey(primaryKeyId)) {
+                throw new IllegalArgumentException("primary key " + primaryKeyId + " is not in the key ring");
+            }
+            if (legacyKeyId != null && !this.keys.containsKey(legacyKeyId)) {
+                throw new IllegalArgumentException("legacy key " + legacyKeyId + " is not in the key ring");
+            }
+            this.primaryKeyId = primaryKeyId;
+            this.legacyKeyId = legacyKeyId;
+        }
+    }
+
+    private static byte[] decodeKey(String keyString) {
+        byte[] keyBytes = base64Decoder.decode(keyString);
+        // Required 128, 192, 256-bit key (16, 24, 32 bytes)
+        if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+            throw new IllegalArgumentException("key must be 16, 24, or 32 bytes");
+        }
+        return keyBytes;
+    }
+
+    /**
+     * A key with its cipher pools. Replacing the key ring carries unchanged keys over,
+     * so their ciphers are never initialized again.
+     */
+    private static final class Key {
+        private final byte[] bytes;
+        private final CipherPool encryptCiphers, decryptCiphers;
+
+        private Key(byte[] bytes) {
+            this.bytes = bytes;
+            SecretKeySpec keySpec = new SecretKeySpec(bytes, "AES");
+            this.encryptCiphers = new CipherPool(Cipher.ENCRYPT_MODE, keySpec);
+            this.decryptCiphers = new CipherPool(Cipher.DECRYPT_MODE, keySpec);
+        }
+    }
+
+    /**
+     * The keys in use, replaced as a whole when the key ring changes.
+     */
+    private static final class Keys {
+        private final int primaryKeyId;
+        private final Key primary, legacy;
+        private final Key[] byId;
+        /**
+         * 0 for a single key, whose ciphertexts have no key id, otherwise 1.
+         */
+        private final int keyIdLength;
+
+        private Keys(int primaryKeyId, Key[] byId, Key legacy, boolean writeKeyId) {
+            this.primaryKeyId = primaryKeyId;
+            this.primary = writeKeyId ? byId[primaryKeyId] : legacy;
+            this.legacy = legacy;
+            this.byId = byId;
+            this.keyIdLength = writeKeyId ? 1 : 0;
+        }
+
+        private static boolean hasKeyId(int ciphertextLength) {
+            return ciphertextLength % BLOCK_SIZE == 1;
+        }
+
+        /**
+         * @param firstByte The first byte of the ciphertext, only used if the ciphertext has a key id.
+         */
+        private Key forDecryption(int ciphertextLength, byte firstByte) {
+            Key key = hasKeyId(ciphertextLength) ? byId[firstByte & 0xFF] : legacy;
+            if (key == null) {
+                throw new IllegalArgumentException(hasKeyId(ciphertextLength)
+                        ? "unknown key id: " + (firstByte & 0xFF)
+                        : "ciphertext without key id is not accepted");
+            }
+            return key;
+        }
+
+        /**
+         * Write the key id, if any, and return the number of bytes written.
+         */
+        private int writeKeyId(byte[] dst) {
+            if (keyIdLength != 0) {
+                dst[0] = (byte) primaryKeyId;
+            }
+            return keyIdLength;
+        }
+    }
+
+    private volatile Keys keys;
 
+    /**
+     * @return The key used for encryption.
+     */
     public byte[] getKeyBytes() {
-        return keyBytes.clone();
+        return keys.primary.bytes.clone();
     }
 
+    /**
+     * Create a tool with a single key. Its ciphertexts carry no key id, the same as before key rings existed.
+     */
     public EncryptionTool(String keyString) {
-        this.keyBytes = base64Decoder.decode(keyString);
-        try {
-            // Required 128, 192, 256-bit key (16, 24, 32 bytes)
-            SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "AES");
-            encryptCipher = Cipher.getInstance(CIPHER_ALGORITHM);
-            encryptCipher.init(Cipher.ENCRYPT_MODE, keySpec);
-            decryptCipher = Cipher.getInstance(CIPHER_ALGORITHM);
-            decryptCipher.init(Cipher.DECRYPT_MODE, keySpec);
-        } catch (NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException e) {
-            throw new RuntimeException("encryption algorithm not supported", e);
+        this.keys = new Keys(0, new Key[MAX_KEY_ID + 1], new Key(decodeKey(keyString)), false);
+    }
+
+    public EncryptionTool(KeyRing keyRing) {
+        setKeyRing(keyRing);
+    }
+
+    /**
+     * Replace the keys without blocking encryption or decryption in progress; each call sees either the old
+     * or the new key ring. Ciphers of new keys are initialized here, unchanged keys keep their initialized ciphers.
+     */
+    public void setKeyRing(KeyRing keyRing) {
+        Keys current = this.keys;
+        Key[] byId = new Key[MAX_KEY_ID + 1];
+        keyRing.keys.forEach((id, bytes) -> byId[id] = findOrCreateKey(current, bytes));
+        Key legacy = keyRing.legacyKeyId == null ? null : byId[keyRing.legacyKeyId];
+        this.keys = new Keys(keyRing.primaryKeyId, byId, legacy, true);
+    }
+
+    private static Key findOrCreateKey(Keys current, byte[] bytes) {
+        if (current != null) {
+            if (current.legacy != null && Arrays.equals(current.legacy.bytes, bytes)) {
+                return current.legacy;
+            }
+            for (Key key : current.byId) {
+                if (key != null && Arrays.equals(key.bytes, bytes)) {
+                    return key;
+                }
+            }
         }
+        return new Key(bytes);
     }
 
     // Tools
@@ -62,24 +322,32 @@ public class EncryptionTool {
         return Base64.getEncoder().encodeToString(keyBytes);
     }
 
-    private static boolean isUrlEncoded(String str) {
-        return str.contains("_") || str.contains("-");
+    private static int getCipherOutputSize(int length) {
+        return (length / BLOCK_SIZE + 1) * BLOCK_SIZE;
     }
 
     // Encrypt
 
-    private String encodeToString(Base64.Encoder encoder, byte[] encryptedBytes) {
-        return encoder.encodeToString(encryptedBytes);
-    }
-
     public byte[] encryptToBytes(byte[] bytes) {
-        synchronized (encryptionLock) {
-            try {
-                return encryptCipher.doFinal(bytes);
-            } catch (IllegalBlockSizeException | BadPaddingException e) {
-                throw new IllegalArgumentException("failed to encrypt bytes", e);
+        Keys keys = this.keys;
+        CipherPool pool = keys.primary.encryptCiphers;
+        PooledCipher pooled = pool.borrow();
+        byte[] ret = new byte[keys.keyIdLength + getCipherOutputSize(bytes.length)];
+        boolean reusable = false;
+        try {
+            pooled.cipher.doFinal(bytes, 0, bytes.length, ret, keys.writeKeyId(ret));
+            reusable = true;
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            reusable = true;
+            throw new IllegalArgumentException("failed to encrypt bytes", e);
+        } catch (ShortBufferException e) {
+            throw new IllegalArgumentException("failed to encrypt bytes", e);
+        } finally {
+            if (reusable) {
+                pool.release(pooled);
             }
         }
+        return ret;
     }
 
     public byte[] encryptToBytes(String str) {
@@ -87,35 +355,109 @@ public class EncryptionTool {
     }
 
     public String encryptToString(byte[] bytes) {
-        return encodeToString(base64Encoder, encryptToBytes(bytes));
+        return encryptToBase64(null, bytes, false);
     }
 
     public String encryptToString(String content) {
-        return encodeToString(base64Encoder, encryptToBytes(content));
+        return encryptToBase64(content, null, false);
     }
 
     public String encryptToUrlString(byte[] bytes) {
-        return encodeToString(base64UrlEncoder, encryptToBytes(bytes));
+        return encryptToBase64(null, bytes, true);
     }
 
     public String encryptToUrlString(String content) {
-        return encodeToString(base64UrlEncoder, encryptToBytes(content));
+        return encryptToBase64(content, null, true);
+    }
+
+    /**
+     * Encrypt {@code input.remaining()} bytes into {@code output}, advancing the positions of both buffers.
+     * Heap and direct buffers are both supported, and they must not overlap.
+     *
+     * @return The number of bytes written to {@code output}.
+     * @throws IllegalArgumentException If {@code output} has less than {@link #getEncryptedSize(int)} bytes remaining.
+     */
+    public int encrypt(ByteBuffer input, ByteBuffer output) {
+        Keys keys = this.keys;
+        int outputSize = keys.keyIdLength + getCipherOutputSize(input.remaining());
+        if (output.remaining() < outputSize) {
+            throw new IllegalArgumentException("output buffer too small, need " + outputSize + " bytes");
+        }
+        if (keys.keyIdLength != 0) {
+            output.put((byte) keys.primaryKeyId);
+        }
+        return keys.keyIdLength + doFinal(keys.primary.encryptCiphers, input, output, "failed to encrypt bytes");
+    }
+
+    /**
+     * The number of bytes {@code length} bytes of plaintext encrypt to, including the key id if there is one.
+     */
+    public int getEncryptedSize(int length) {
+        return keys.keyIdLength + getCipherOutputSize(length);
+    }
+
+    /**
+     * Encrypt either {@code content} or {@code bytes} and Base64-encode the result, all within the scratch arrays
+     * of the pooled cipher. The only allocation is the returned string.
+     */
+    private String encryptToBase64(String content, byte[] bytes, boolean url) {
+        Keys keys = this.keys;
+        CipherPool pool = keys.primary.encryptCiphers;
+        PooledCipher pooled = pool.borrow();
+        String ret;
+        boolean reusable = false;
+        try {
+            byte[] input;
+            int inputLength;
+            if (content != null) {
+                input = pooled.input(content.length() * MAX_UTF8_BYTES_PER_CHAR);
+                inputLength = encodeUtf8(content, input, 0);
+            } else {
+                input = bytes;
+                inputLength = bytes.length;
+            }
+            byte[] output = pooled.output(keys.keyIdLength + getCipherOutputSize(inputLength));
+            int keyIdLength = keys.writeKeyId(output);
+            int outputLength = keyIdLength + pooled.cipher.doFinal(input, 0, inputLength, output, keyIdLength);
+            reusable = true;
+            if (content != null) {
+                // Do not leave plaintext in the pool
+                Arrays.fill(input, 0, inputLength, (byte) 0);
+            }
+            byte[] text = pooled.input(base64EncodedLength(outputLength));
+            int textLength = encodeBase64(output, 0, outputLength, text, 0, url);
+            ret = new String(text, 0, textLength, StandardCharsets.ISO_8859_1);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            reusable = true;
+            throw new IllegalArgumentException("failed to encrypt bytes", e);
+        } catch (ShortBufferException e) {
+            throw new IllegalArgumentException("failed to encrypt bytes", e);
+        } finally {
+            if (reusable) {
+                pool.release(pooled);
+            }
+        }
+        return ret;
     }
 
     // Decrypt
 
     public byte[] decryptToBytes(byte[] bytes) {
-        synchronized (decryptionLock) {
-            try {
-                return decryptCipher.doFinal(bytes);
-            } catch (IllegalBlockSizeException | BadPaddingException e) {
-                throw new IllegalArgumentException("failed to decrypt bytes", e);
-            }
+        Keys keys = this.keys;
+        Key key = keys.forDecryption(bytes.length, bytes.length > 0 ? bytes[0] : 0);
+        int offset = Keys.hasKeyId(bytes.length) ? 1 : 0;
+        PooledCipher pooled = key.decryptCiphers.borrow();
+        try {
+            return pooled.cipher.doFinal(bytes, offset, bytes.length - offset);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            throw new IllegalArgumentException("failed to decrypt bytes", e);
+        } finally {
+            key.decryptCiphers.release(pooled);
         }
     }
 
     public byte[] decryptToBytes(String str) {
-        return decryptToBytes((isUrlEncoded(str) ? base64UrlDecoder : base64Decoder).decode(str));
+        return decryptFromString(str, Arrays::copyOf);
     }
 
     public String decryptToString(byte[] bytes) {
@@ -123,7 +465,113 @@ public class EncryptionTool {
     }
 
     public String decryptToString(String content) {
-        return new String(decryptToBytes(content), DEFAULT_CHARSET);
+        return decryptFromString(content, (plaintext, length) -> new String(plaintext, 0, length, DEFAULT_CHARSET));
+    }
+
+    /**
+     * Decrypt {@code input.remaining()} bytes into {@code output}, advancing the positions of both buffers.
+     * Heap and direct buffers are both supported, and they must not overlap.
+     * {@code output} needs at most {@code input.remaining()} bytes.
+     *
+     * @return The number of bytes written to {@code output}.
+     * @throws IllegalArgumentException If the input is not a valid ciphertext or {@code output} is too small.
+     */
+    public int decrypt(ByteBuffer input, ByteBuffer output) {
+        int length = input.remaining();
+        Key key = keys.forDecryption(length, length > 0 ? input.get(input.position()) : 0);
+        if (Keys.hasKeyId(length)) {
+            input.position(input.position() + 1);
+        }
+        return doFinal(key.decryptCiphers, input, output, "failed to decrypt bytes");
+    }
+
+    /**
+     * Heap buffers go straight to the cipher. Direct buffers are staged through the scratch arrays
+     * of the pooled cipher, since {@code Cipher.doFinal(ByteBuffer, ByteBuffer)} allocates temporary arrays for them.
+     */
+    private static int doFinal(CipherPool pool, ByteBuffer input, ByteBuffer output, String errorMessage) {
+        PooledCipher pooled = pool.borrow();
+        boolean reusable = true;
+        int ret;
+        try {
+            if (input.hasArray() && output.hasArray()) {
+                reusable = false;
+                ret = pooled.cipher.doFinal(input, output);
+                reusable = true;
+            } else {
+                int inputLength = input.remaining();
+                int outputSize = pooled.cipher.getOutputSize(inputLength);
+                if (output.remaining() < outputSize) {
+                    throw new ShortBufferException("need " + outputSize + " bytes, " + output.remaining() + " remaining");
+                }
+                byte[] in = pooled.input(inputLength);
+                byte[] out = pooled.output(outputSize);
+                input.get(in, 0, inputLength);
+                ret = pooled.cipher.doFinal(in, 0, inputLength, out, 0);
+                output.put(out, 0, ret);
+                // Do not leave plaintext in the pool
+                Arrays.fill(in, 0, inputLength, (byte) 0);
+                Arrays.fill(out, 0, ret, (byte) 0);
+            }
+        } catch (ShortBufferException e) {
+            throw new IllegalArgumentException("output buffer too small", e);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            reusable = true;
+            throw new IllegalArgumentException(errorMessage, e);
+        } finally {
+            if (reusable) {
+                pool.release(pooled);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Reads decrypted plaintext out of a scratch array that is cleared and reused once {@link #read} returns.
+     */
+    public interface PlaintextReader<T, E extends Exception> {
+        T read(byte[] plaintext, int length) throws E;
+    }
+
+    /**
+     * Base64-decode (either alphabet) and decrypt within the scratch arrays of the pooled cipher,
+     * then let {@code reader} turn the plaintext into the result, without any intermediate array.
+     */
+    public <T, E extends Exception> T decryptFromString(String content, PlaintextReader<T, E> reader) throws E {
+        // The key id is the first decoded byte, peek at it to use the pool of the right key
+        int length = base64DecodedLength(content);
+        Key key = keys.forDecryption(length, length > 0 && content.length() >= 2
+                ? (byte) (base64Value(content.charAt(0)) << 2 | base64Value(content.charAt(1)) >>> 4)
+                : 0);
+        int offset = Keys.hasKeyId(length) ? 1 : 0;
+        CipherPool pool = key.decryptCiphers;
+        PooledCipher pooled = pool.borrow();
+        byte[] output = null;
+        int outputLength = 0;
+        // Decoding throws before the cipher is used, the pooled cipher is still clean then
+        boolean reusable = true;
+        try {
+            byte[] input = pooled.input(base64DecodedMaxLength(content.length()));
+            int inputLength = decodeBase64(content, input, 0);
+            output = pooled.output(inputLength);
+            reusable = false;
+            outputLength = pooled.cipher.doFinal(input, offset, inputLength - offset, output, 0);
+            reusable = true;
+            return reader.read(output, outputLength);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            reusable = true;
+            throw new IllegalArgumentException("failed to decrypt bytes", e);
+        } catch (ShortBufferException e) {
+            throw new IllegalArgumentException("failed to decrypt bytes", e);
+        } finally {
+            if (output != null) {
+                // Do not leave plaintext in the pool
+                Arrays.fill(output, 0, outputLength, (byte) 0);
+            }
+            if (reusable) {
+                pool.release(pooled);
+            }
+        }
     }
 
     // Test
@@ -3,6 +3,7 @@ package xyz.hyrio.common.tool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.*;
 import java.time.Duration;
@@ -13,7 +14,11 @@ import java.util.function.Consumer;
 
 import static xyz.hyrio.common.util.ObjectUtils.requireHasTextElse;
 
-public class FileModificationWatcher {
+/**
+ * Watches a file through its parent directory and runs the callback when the file is modified, created, replaced
+ * (e.g. an atomic rename over it) or deleted. The watching thread is a daemon; {@link #close()} stops it.
+ */
+public class FileModificationWatcher implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(FileModificationWatcher.class);
 
     private final Path watchedFile;
@@ -43,6 +48,7 @@ public class FileModificationWatcher {
     }
 
     private final ScheduledExecutorService executor;
+    private final WatchService watchService;
     private long lastRunTimestamp = 0L;
 
     private void run() {
@@ -57,47 +63,77 @@ public class FileModificationWatcher {
     }
 
     public FileModificationWatcher(Path watchedFilePath, Consumer<Path> callback, Duration callbackMinInterval, String runnerThreadName, boolean runCallbackImmediately) throws IOException {
+        this(watchedFilePath, callback, callbackMinInterval, runnerThreadName, runCallbackImmediately, true);
+    }
+
+    /**
+     * @param createIfMissing create the file when it does not exist; otherwise a missing file is watched until it is created.
+     */
+    public FileModificationWatcher(Path watchedFilePath, Consumer<Path> callback, Duration callbackMinInterval, String runnerThreadName, boolean runCallbackImmediately,
+                                   boolean createIfMissing) throws IOException {
         this.callback = callback;
         this.callbackMinInterval = callbackMinInterval;
         this.runnerThreadName = runnerThreadName;
         this.runCallbackImmediately = runCallbackImmediately;
+
+        if (createIfMissing && !Files.exists(watchedFilePath)) {
+            log.debug("File {} does not exist, creating it", watchedFilePath);
+            Files.createFile(watchedFilePath);
+        }
+        this.watchedFile = Files.exists(watchedFilePath) ? watchedFilePath.toRealPath() : watchedFilePath.toAbsolutePath().normalize();
+
+        Path parentFolder = watchedFile.getParent();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            parentFolder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
         this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread thread = new Thread(r);
             thread.setName(requireHasTextElse(runnerThreadName, "file-modification-watcher-runner"));
             thread.setDaemon(true);
             return thread;
         });
+        Thread watchThread = new Thread(this::watch, "file-modification-watcher-thread");
+        watchThread.setDaemon(true);
+        watchThread.start();
 
-        if (!Files.exists(watchedFilePath)) {
-            log.debug("File {} does not exist, creating it", watchedFilePath);
-            Files.createFile(watchedFilePath);
+        if (runCallbackImmediately) {
+            executor.execute(this::run);
         }
-        this.watchedFile = watchedFilePath.toRealPath();
+        log.info("Watching file modification: {}", watchedFile);
+    }
 
-        Path parentFolder = watchedFile.getParent();
-        WatchService watcher = FileSystems.getDefault().newWatchService();
-        parentFolder.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY);
-        new Thread(() -> {
-            while (true) {
-                try {
-                    WatchKey key = watcher.take();
-                    for (WatchEvent<?> event : key.pollEvents()) {
-                        if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY && event.context().toString().equals(watchedFile.getFileName().toString())) {
-                            log.debug("File {} has been modified...", watchedFile);
-                            executor.execute(this::run);
-                        }
+    private void watch() {
+        String fileName = watchedFile.getFileName().toString();
+        while (true) {
+            try {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // OVERFLOW means events were lost, the file may have changed
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || event.context().toString().equals(fileName)) {
+                        log.debug("File {} has been modified ({})...", watchedFile, event.kind());
+                        executor.execute(this::run);
                     }
-                    key.reset();
-                } catch (InterruptedException e) {
-                    log.error("Thread interrupted", e);
                 }
+                if (!key.reset()) {
+                    log.warn("Parent folder of {} is no longer accessible, stop watching", watchedFile);
+                    return;
+                }
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (InterruptedException e) {
+                log.error("Thread interrupted", e);
+            } catch (RuntimeException e) {
+                // the callback executor is shut down by close()
+                if (executor.isShutdown()) {
+                    return;
+                }
+                log.error("Failed to handle file modification of {}", watchedFile, e);
             }
-        }, "file-modification-watcher-thread").start();
-
-        if (runCallbackImmediately) {
-            executor.execute(this::run);
         }
-        log.info("Watching file modification: {}", watchedFile);
     }
 
     /**
@@ -106,4 +142,13 @@ public class FileModificationWatcher {
     public void setLastRunTimestampToNow() {
         lastRunTimestamp = System.currentTimeMillis();
     }
+
+    /**
+     * Stops watching; pending callbacks are discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        watchService.close();
+    }
 }
@@ -0,0 +1,142 @@
+package xyz.hyrio.common.tool;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * HyperLogLog 基数估计：用 2<sup>precision</sup> 个寄存器估计添加过的不同元素个数，标准误差约为 {@code 1.04 / sqrt(2^precision)}
+ * （默认精度 14 约为 0.81%，占用 64 KB）。
+ * <p>
+ * 使用 64 位散列，不需要大基数修正；小基数时用线性计数修正。寄存器只增不减，{@link #add(long)} 以 CAS 并发更新，
+ * 重复添加同一个元素时只读不写。两个精度相同的对象可以合并，合并结果与把两边的元素添加到同一个对象相同。
+ */
+public final class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 14;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final AtomicIntegerArray registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision 寄存器个数的以 2 为底的对数，取值范围为 [{@value #MIN_PRECISION}, {@value #MAX_PRECISION}]。
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be in [" + MIN_PRECISION + ", " + MAX_PRECISION + "]");
+        }
+        this.precision = precision;
+        this.registers = new AtomicIntegerArray(1 << precision);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * 添加一个字符串，以 xxHash64 散列。
+     */
+    public void add(String value) {
+        add(Digester.getXxHash64Value(value));
+    }
+
+    /**
+     * 添加一个元素的 64 位散列值，散列应当均匀分布。
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // 补一个哨兵位，散列的剩余部分全为 0 时 rank 不超过 64 - precision + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        updateMax(index, rank);
+    }
+
+    private void updateMax(int index, int rank) {
+        int current;
+        while (rank > (current = registers.get(index))) {
+            if (registers.compareAndSet(index, current, rank)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 把另一个对象的元素并入本对象。
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge HyperLogLog with precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length(); i++) {
+            int rank = other.registers.get(i);
+            if (rank > 0) {
+                updateMax(i, rank);
+            }
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length();
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            int rank = registers.get(i);
+            sum += Double.longBitsToDouble((1023L - rank) << 52); // 2^-rank
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double alpha = switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public boolean isEmpty() {
+        for (int i = 0; i < registers.length(); i++) {
+            if (registers.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 以每个寄存器一个字节输出，用于持久化或在实例之间传输。
+     */
+    public byte[] toByteArray() {
+        byte[] ret = new byte[registers.length()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = (byte) registers.get(i);
+        }
+        return ret;
+    }
+
+    /**
+     * 从 {@link #toByteArray()} 的输出恢复，精度由长度确定。
+     */
+    public static HyperLogLog fromByteArray(byte[] bytes) {
+        int precision = Integer.numberOfTrailingZeros(bytes.length);
+        if (bytes.length != 1 << precision) {
+            throw new IllegalArgumentException("length must be a power of 2");
+        }
+        HyperLogLog ret = new HyperLogLog(precision);
+        for (int i = 0; i < bytes.length; i++) {
+            int rank = bytes[i];
+            if (rank < 0 || rank > 64 - precision + 1) {
+                throw new IllegalArgumentException("invalid register value " + rank + " at " + i);
+            }
+            ret.registers.set(i, rank);
+        }
+        return ret;
+    }
+}
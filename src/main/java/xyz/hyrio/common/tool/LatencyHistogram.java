@@ -0,0 +1,108 @@
+package xyz.hyrio.common.tool;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的延迟直方图（纳秒），桶按对数-线性划分（与 HdrHistogram 相同的思路）：
+ * 每个 2 的幂区间再等分为 32 个桶，相对误差不超过约 3%，覆盖 0 到约 18 分钟（2<sup>40</sup> ns），超出的值计入最后一个桶。
+ * <p>
+ * {@link #record(long)} 只做几次原子加法，不分配内存；{@link #snapshot(boolean)} 复制所有桶后计算分位数。
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    /**
+     * 小于 2 * SUB_BUCKET_COUNT 的值每个值一个桶，之后每个 2 的幂区间 SUB_BUCKET_COUNT 个桶。
+     */
+    private static final int BUCKET_COUNT = 2 * SUB_BUCKET_COUNT + (MAX_VALUE_BITS - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param count 记录数。
+     * @param mean  平均值（纳秒）。
+     * @param max   最大值（纳秒）。
+     */
+    public record Snapshot(long count, long mean, long max, long p50, long p90, long p99, long p999) {
+    }
+
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) Math.max(value, 0);
+        }
+        if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return 2 * SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * 桶中最大的值。
+     */
+    static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - 2 * SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT + 1;
+        long subBucket = (index - 2 * SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        buckets.getAndIncrement(bucketIndex(nanos));
+        count.getAndIncrement();
+        sum.getAndAdd(nanos);
+        long currentMax;
+        while (nanos > (currentMax = max.get()) && !max.compareAndSet(currentMax, nanos)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @param reset 是否同时清零。清零与并发的 {@link #record(long)} 之间不是原子的，少量记录可能计入前后任一个快照。
+     */
+    public Snapshot snapshot(boolean reset) {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = reset ? buckets.getAndSet(i, 0) : buckets.get(i);
+            total += copy[i];
+        }
+        long sumValue = reset ? sum.getAndSet(0) : sum.get();
+        long maxValue = reset ? max.getAndSet(0) : max.get();
+        if (reset) {
+            count.getAndAdd(-total);
+        }
+        if (total == 0) {
+            return new Snapshot(0, 0, 0, 0, 0, 0, 0);
+        }
+        return new Snapshot(total, sumValue / total, maxValue,
+                percentile(copy, total, maxValue, 0.5),
+                percentile(copy, total, maxValue, 0.9),
+                percentile(copy, total, maxValue, 0.99),
+                percentile(copy, total, maxValue, 0.999));
+    }
+
+    private static long percentile(long[] buckets, long total, long max, double quantile) {
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,150 @@
+package xyz.hyrio.common.tool;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按请求方法和路由模板（如 {@code /api/users/{id}}，而不是实际的 URI）统计请求延迟和错误状态码。
+ * <p>
+ * 路由数超过上限后，新的路由计入 {@link #OTHER_ROUTE}，内存占用有上界。
+ * 同一路由第一次出现时创建统计对象，之后的记录只有一次哈希表查找和几次原子加法，不分配内存。
+ *
+ * @see xyz.hyrio.common.interceptor.ShowRequestInterceptor#setLatencyRecorder(LatencyRecorder)
+ */
+public class LatencyRecorder {
+    /**
+     * 没有匹配到处理器的请求（如静态资源、404）。
+     */
+    public static final String UNMATCHED_ROUTE = "UNMATCHED";
+    /**
+     * 超出路由数上限后的新路由。
+     */
+    public static final String OTHER_ROUTE = "OTHER";
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS", "TRACE", "OTHER"};
+    private static final int MIN_ERROR_STATUS = 400;
+    private static final int MAX_ERROR_STATUS = 599;
+
+    private static final class Stats {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final AtomicLongArray errorCounts = new AtomicLongArray(MAX_ERROR_STATUS - MIN_ERROR_STATUS + 1);
+    }
+
+    /**
+     * 一个路由下按请求方法分开的统计，按需创建。
+     */
+    private static final class Route {
+        private final AtomicReferenceArray<Stats> byMethod = new AtomicReferenceArray<>(METHODS.length);
+
+        private Stats get(int methodIndex) {
+            Stats stats = byMethod.get(methodIndex);
+            if (stats == null) {
+                byMethod.compareAndSet(methodIndex, null, new Stats());
+                stats = byMethod.get(methodIndex);
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * @param errors 各错误状态码（4xx、5xx）的次数，只包含出现过的状态码。
+     */
+    public record RouteSnapshot(String method, String route, long count, double meanMillis, double maxMillis,
+                                double p50Millis, double p90Millis, double p99Millis, double p999Millis,
+                                Map<Integer, Long> errors) {
+    }
+
+    private final int maximumRoutes;
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    public int getMaximumRoutes() {
+        return maximumRoutes;
+    }
+
+    /**
+     * @param maximumRoutes 最多单独统计的路由数。
+     */
+    public LatencyRecorder(int maximumRoutes) {
+        if (maximumRoutes <= 0) {
+            throw new IllegalArgumentException("maximumRoutes must be positive");
+        }
+        this.maximumRoutes = maximumRoutes;
+    }
+
+    private static int methodIndex(String method) {
+        for (int i = 0; i < METHODS.length - 1; i++) {
+            if (METHODS[i].equalsIgnoreCase(method)) {
+                return i;
+            }
+        }
+        return METHODS.length - 1;
+    }
+
+    private Route route(String route) {
+        if (route == null) {
+            route = UNMATCHED_ROUTE;
+        }
+        Route ret = routes.get(route);
+        if (ret == null) {
+            if (routes.size() >= maximumRoutes && !UNMATCHED_ROUTE.equals(route)) {
+                route = OTHER_ROUTE;
+            }
+            ret = routes.computeIfAbsent(route, r -> new Route());
+        }
+        return ret;
+    }
+
+    /**
+     * @param route  路由模板，没有匹配到处理器时为 {@code null}。
+     * @param status 响应状态码。
+     */
+    public void record(String method, String route, long nanos, int status) {
+        Stats stats = route(route).get(methodIndex(method));
+        stats.histogram.record(nanos);
+        if (status >= MIN_ERROR_STATUS && status <= MAX_ERROR_STATUS) {
+            stats.errorCounts.getAndIncrement(status - MIN_ERROR_STATUS);
+        }
+    }
+
+    /**
+     * 各路由的统计，按请求数从多到少排列。
+     *
+     * @param reset 是否同时清零。
+     */
+    public List<RouteSnapshot> snapshot(boolean reset) {
+        List<RouteSnapshot> ret = new ArrayList<>();
+        routes.forEach((route, r) -> {
+            for (int i = 0; i < METHODS.length; i++) {
+                Stats stats = r.byMethod.get(i);
+                if (stats == null) {
+                    continue;
+                }
+                LatencyHistogram.Snapshot s = stats.histogram.snapshot(reset);
+                Map<Integer, Long> errors = new LinkedHashMap<>();
+                for (int j = 0; j < stats.errorCounts.length(); j++) {
+                    long n = reset ? stats.errorCounts.getAndSet(j, 0) : stats.errorCounts.get(j);
+                    if (n != 0) {
+                        errors.put(MIN_ERROR_STATUS + j, n);
+                    }
+                }
+                if (s.count() == 0 && errors.isEmpty()) {
+                    continue;
+                }
+                ret.add(new RouteSnapshot(METHODS[i], route, s.count(), toMillis(s.mean()), toMillis(s.max()),
+                        toMillis(s.p50()), toMillis(s.p90()), toMillis(s.p99()), toMillis(s.p999()), errors));
+            }
+        });
+        ret.sort(Comparator.comparingLong(RouteSnapshot::count).reversed());
+        return ret;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,153 @@
+package xyz.hyrio.common.tool;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 流式的 MurmurHash3 x64 128 位（种子为 0）实现，结果的字节序与 Guava {@code Hashing.murmur3_128()} 一致。
+ * 直接缓冲区按小端序原地读取，不会复制到堆上。
+ *
+ * @see Digester.Algorithm#MURMUR3_128
+ */
+final class Murmur3Hash128 {
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private static final int BLOCK_LENGTH = 16;
+
+    private static final VarHandle LONG_ARRAY = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_BUFFER = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] block = new byte[BLOCK_LENGTH];
+    private int blockLength;
+    private long totalLength;
+    private long h1, h2;
+
+    Murmur3Hash128() {
+        reset();
+    }
+
+    void reset() {
+        h1 = 0;
+        h2 = 0;
+        blockLength = 0;
+        totalLength = 0;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private void consumeBlock(long k1, long k2) {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52DCE729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495AB5;
+    }
+
+    private void consumeBufferedBlock() {
+        consumeBlock((long) LONG_ARRAY.get(block, 0), (long) LONG_ARRAY.get(block, 8));
+        blockLength = 0;
+    }
+
+    void update(byte b) {
+        totalLength++;
+        block[blockLength++] = b;
+        if (blockLength == BLOCK_LENGTH) {
+            consumeBufferedBlock();
+        }
+    }
+
+    void update(byte[] bytes, int offset, int len) {
+        totalLength += len;
+        int end = offset + len;
+        while (blockLength != 0 && offset < end) {
+            block[blockLength++] = bytes[offset++];
+            if (blockLength == BLOCK_LENGTH) {
+                consumeBufferedBlock();
+            }
+        }
+        for (; offset <= end - BLOCK_LENGTH; offset += BLOCK_LENGTH) {
+            consumeBlock((long) LONG_ARRAY.get(bytes, offset), (long) LONG_ARRAY.get(bytes, offset + 8));
+        }
+        System.arraycopy(bytes, offset, block, blockLength, end - offset);
+        blockLength += end - offset;
+    }
+
+    /**
+     * 消费 {@code buffer} 中 position 到 limit 之间的数据，结束后 position 等于 limit。
+     */
+    void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        int offset = buffer.position();
+        int end = buffer.limit();
+        totalLength += end - offset;
+        while (blockLength != 0 && offset < end) {
+            block[blockLength++] = buffer.get(offset++);
+            if (blockLength == BLOCK_LENGTH) {
+                consumeBufferedBlock();
+            }
+        }
+        for (; offset <= end - BLOCK_LENGTH; offset += BLOCK_LENGTH) {
+            consumeBlock((long) LONG_BUFFER.get(buffer, offset), (long) LONG_BUFFER.get(buffer, offset + 8));
+        }
+        buffer.get(offset, block, blockLength, end - offset);
+        blockLength += end - offset;
+        buffer.position(end);
+    }
+
+    /**
+     * 计算最终结果，按 h1、h2 的小端序依次写入 {@code out} 的 {@code offset} 处，共 16 字节。
+     */
+    void getValue(byte[] out, int offset) {
+        long k1 = 0, k2 = 0;
+        for (int i = blockLength - 1; i >= Long.BYTES; i--) {
+            k2 = (k2 << 8) | (block[i] & 0xFFL);
+        }
+        for (int i = Math.min(blockLength, Long.BYTES) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (block[i] & 0xFFL);
+        }
+        long r1 = h1 ^ mixK1(k1);
+        long r2 = h2 ^ mixK2(k2);
+
+        r1 ^= totalLength;
+        r2 ^= totalLength;
+        r1 += r2;
+        r2 += r1;
+        r1 = fmix64(r1);
+        r2 = fmix64(r2);
+        r1 += r2;
+        r2 += r1;
+
+        LONG_ARRAY.set(out, offset, r1);
+        LONG_ARRAY.set(out, offset + Long.BYTES, r2);
+    }
+}
@@ -0,0 +1,263 @@
+package xyz.hyrio.common.tool;
+
+import org.springframework.http.HttpStatus;
+
+import java.util.Arrays;
+
+/**
+ * 当前请求的状态（开始时间、客户端 IP、异常处理结果等），每个请求创建一个对象，通过一个 {@link ThreadLocal} 获取。
+ * <p>
+ * 由 {@link xyz.hyrio.common.interceptor.ShowRequestInterceptor} 在请求开始时创建、结束时清除；
+ * 交给 {@code @Async} 线程池的任务通过 {@link xyz.hyrio.common.config.RequestContextTaskDecorator} 带上同一个对象。
+ * 不使用 {@link InheritableThreadLocal}：它在每次创建线程时复制，对大量创建的虚拟线程代价很高，而且线程池中的线程会拿到创建时的旧值。
+ * <p>
+ * 请求中的代码可以用 {@link #recordSpan(String, long)} 记录命名的耗时，与拦截器记录的阶段一起输出到请求日志和
+ * {@code Server-Timing} 响应头（见 {@link xyz.hyrio.common.interceptor.ServerTimingInterceptor}）。
+ */
+public final class RequestContext {
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private final long startTimeMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final String ipAddress;
+    private volatile Exception exception;
+    private volatile HttpStatus status;
+
+    /**
+     * 命名耗时，同名的累加。由 this 保护，{@code @Async} 任务也可能写入。
+     */
+    private String[] spanNames;
+    private long[] spanNanos;
+    private int spanCount;
+    /**
+     * 当前阶段，只在请求线程上读写。
+     */
+    private String phase;
+    private long phaseStartNanos;
+
+    private RequestContext(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public long getElapsedMillis() {
+        return getElapsedNanos() / 1_000_000;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public Exception getException() {
+        return exception;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * 记录 {@code @ExceptionHandler} 处理的异常，请求日志据此输出状态码和异常信息。
+     */
+    public void setException(HttpStatus status, Exception exception) {
+        this.status = status;
+        this.exception = exception;
+    }
+
+    public void clearException() {
+        this.status = null;
+        this.exception = null;
+    }
+
+    /**
+     * 记录一段命名的耗时，同名的耗时累加。名称中 {@code Server-Timing} 不允许的字符替换为 {@code _}。
+     */
+    public synchronized void addSpan(String name, long durationNanos) {
+        name = sanitizeSpanName(name);
+        for (int i = 0; i < spanCount; i++) {
+            if (spanNames[i].equals(name)) {
+                spanNanos[i] += durationNanos;
+                return;
+            }
+        }
+        if (spanNames == null) {
+            spanNames = new String[8];
+            spanNanos = new long[8];
+        } else if (spanCount == spanNames.length) {
+            spanNames = Arrays.copyOf(spanNames, spanCount * 2);
+            spanNanos = Arrays.copyOf(spanNanos, spanCount * 2);
+        }
+        spanNames[spanCount] = name;
+        spanNanos[spanCount] = durationNanos;
+        spanCount++;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    /**
+     * 结束当前阶段（记为同名的耗时）并开始一个新的阶段。
+     */
+    public void beginPhase(String name) {
+        long now = System.nanoTime();
+        if (phase != null) {
+            addSpan(phase, now - phaseStartNanos);
+        }
+        phase = name;
+        phaseStartNanos = now;
+    }
+
+    /**
+     * 结束当前阶段，没有进行中的阶段时什么也不做。
+     */
+    public void endPhase() {
+        if (phase != null) {
+            addSpan(phase, System.nanoTime() - phaseStartNanos);
+            phase = null;
+        }
+    }
+
+    /**
+     * 以 {@code Server-Timing} 的格式输出已记录的耗时（毫秒），如 {@code chain;dur=0.215, handler;dur=12.034}。
+     *
+     * @return 没有记录时返回 {@code null}。
+     */
+    public synchronized String formatSpans() {
+        if (spanCount == 0) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(spanCount * 24);
+        for (int i = 0; i < spanCount; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            appendSpan(sb, spanNames[i], spanNanos[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 追加一项 {@code name;dur=毫秒}，保留 3 位小数。
+     */
+    public static StringBuilder appendSpan(StringBuilder sb, String name, long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1000;
+        long fraction = micros % 1000;
+        sb.append(name).append(";dur=").append(micros / 1000).append('.');
+        if (fraction < 100) sb.append('0');
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction);
+    }
+
+    private static String sanitizeSpanName(String name) {
+        if (name == null || name.isEmpty()) {
+            return "_";
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!isTokenChar(name.charAt(i))) {
+                char[] chars = name.toCharArray();
+                for (int j = i; j < chars.length; j++) {
+                    if (!isTokenChar(chars[j])) {
+                        chars[j] = '_';
+                    }
+                }
+                return new String(chars);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * RFC 9110 的 tchar。
+     */
+    private static boolean isTokenChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || "!#$%&'*+-.^_`|~".indexOf(c) >= 0;
+    }
+
+    /**
+     * 当前线程在请求中时，记录从 {@code startNanos}（{@link System#nanoTime()}）到现在的耗时，否则什么也不做。
+     * <pre>{@code
+     * long start = System.nanoTime();
+     * ...
+     * RequestContext.recordSpan("db", start);
+     * }</pre>
+     */
+    public static void recordSpan(String name, long startNanos) {
+        RequestContext context = CURRENT.get();
+        if (context != null) {
+            context.addSpan(name, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * @return 不在请求中时返回 {@code null}。
+     */
+    public static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 获取当前请求的上下文，不存在时创建一个没有 IP 地址的上下文，由 {@link #end()} 清除。
+     */
+    public static RequestContext getOrCreate() {
+        RequestContext context = CURRENT.get();
+        if (context == null) {
+            context = new RequestContext(null);
+            CURRENT.set(context);
+        }
+        return context;
+    }
+
+    /**
+     * 开始一个请求，替换当前线程上遗留的上下文。
+     */
+    public static RequestContext begin(String ipAddress) {
+        RequestContext context = new RequestContext(ipAddress);
+        CURRENT.set(context);
+        return context;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 在另一个线程上继续一个请求，例如异步请求再次分派时，恢复第一次分派结束时保存的上下文。
+     */
+    public static void resume(RequestContext context) {
+        CURRENT.set(context);
+    }
+
+    /**
+     * 使任务在执行时能获取到提交时的请求上下文，执行完后恢复执行线程原来的上下文。
+     */
+    public static Runnable wrap(Runnable task) {
+        RequestContext captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            RequestContext previous = CURRENT.get();
+            CURRENT.set(captured);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+}
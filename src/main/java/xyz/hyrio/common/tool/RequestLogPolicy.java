@@ -0,0 +1,155 @@
+package xyz.hyrio.common.tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 决定一条访问日志是否输出，以降低高并发下的日志量：
+ * <ul>
+ *     <li>有异常或 5xx 的请求、耗时超过 {@code slowThreshold} 的请求总是输出；</li>
+ *     <li>其余请求每个路由每 N 个输出 1 个（N 可以按路由单独配置），并受每个路由每秒行数上限（令牌桶）限制。</li>
+ * </ul>
+ * 被抑制的行数按路由计数，后台线程每隔 {@code reportInterval} 输出一次汇总，日志量的变化仍然可见。
+ * 路由数超过上限后，新的路由共用 {@link LatencyRecorder#OTHER_ROUTE} 的状态。
+ *
+ * @see xyz.hyrio.common.interceptor.ShowRequestInterceptor#setRequestLogPolicy(RequestLogPolicy)
+ */
+public class RequestLogPolicy implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(RequestLogPolicy.class);
+
+    private static final int MAXIMUM_ROUTES = 1000;
+
+    private final class RouteState {
+        private final int sampleEvery;
+        private final AtomicLong counter = new AtomicLong();
+        private final TokenBucket bucket = maxLinesPerSecond > 0 ? new TokenBucket(maxLinesPerSecond, Math.max(1, (int) maxLinesPerSecond)) : null;
+        private final LongAdder sampledOut = new LongAdder();
+        private final LongAdder rateLimited = new LongAdder();
+
+        private RouteState(int sampleEvery) {
+            this.sampleEvery = sampleEvery;
+        }
+    }
+
+    private final int sampleEvery;
+    private final Map<String, Integer> routeSampleEvery;
+    private final long slowThresholdMillis;
+    private final double maxLinesPerSecond;
+    private final Map<String, RouteState> routes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public long getSlowThresholdMillis() {
+        return slowThresholdMillis;
+    }
+
+    public double getMaxLinesPerSecond() {
+        return maxLinesPerSecond;
+    }
+
+    /**
+     * @param sampleEvery       正常请求每 N 个输出 1 个，1 表示全部输出。
+     * @param routeSampleEvery  按路由模板覆盖 {@code sampleEvery}，可以为 {@code null}。
+     * @param slowThreshold     超过该耗时的请求总是输出。
+     * @param maxLinesPerSecond 每个路由每秒最多输出的正常请求行数，不大于 0 表示不限制。
+     * @param reportInterval    输出被抑制行数汇总的间隔。
+     */
+    public RequestLogPolicy(int sampleEvery, Map<String, Integer> routeSampleEvery, Duration slowThreshold,
+                            double maxLinesPerSecond, Duration reportInterval) {
+        if (sampleEvery <= 0 || (routeSampleEvery != null && routeSampleEvery.values().stream().anyMatch(n -> n == null || n <= 0))) {
+            throw new IllegalArgumentException("sample rates must be positive");
+        }
+        this.sampleEvery = sampleEvery;
+        this.routeSampleEvery = routeSampleEvery == null ? Map.of() : Map.copyOf(routeSampleEvery);
+        this.slowThresholdMillis = slowThreshold.toMillis();
+        this.maxLinesPerSecond = maxLinesPerSecond;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setName("request-log-policy-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = reportInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private RouteState route(String route) {
+        if (route == null) {
+            route = LatencyRecorder.UNMATCHED_ROUTE;
+        }
+        RouteState ret = routes.get(route);
+        if (ret == null) {
+            if (routes.size() >= MAXIMUM_ROUTES) {
+                route = LatencyRecorder.OTHER_ROUTE;
+            }
+            ret = routes.computeIfAbsent(route, r -> new RouteState(routeSampleEvery.getOrDefault(r, sampleEvery)));
+        }
+        return ret;
+    }
+
+    /**
+     * @param route         路由模板，没有匹配到处理器时为 {@code null}。
+     * @param elapsedMillis 请求耗时。
+     * @param status        响应状态码。
+     * @param hasException  请求是否以异常结束。
+     */
+    public boolean shouldLog(String route, long elapsedMillis, int status, boolean hasException) {
+        if (hasException || status >= 500 || elapsedMillis >= slowThresholdMillis) {
+            return true;
+        }
+        RouteState state = route(route);
+        if (state.sampleEvery > 1 && state.counter.getAndIncrement() % state.sampleEvery != 0) {
+            state.sampledOut.increment();
+            return false;
+        }
+        if (state.bucket != null && !state.bucket.tryAcquire()) {
+            state.rateLimited.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void report() {
+        try {
+            long sampledOut = 0, rateLimited = 0;
+            Map<String, Long> byRoute = new HashMap<>();
+            for (Map.Entry<String, RouteState> e : routes.entrySet()) {
+                long s = e.getValue().sampledOut.sumThenReset();
+                long r = e.getValue().rateLimited.sumThenReset();
+                if (s + r > 0) {
+                    byRoute.put(e.getKey(), s + r);
+                }
+                sampledOut += s;
+                rateLimited += r;
+            }
+            if (sampledOut + rateLimited > 0) {
+                log.info("Suppressed access log lines: {} by sampling, {} by rate limit, by route: {}", sampledOut, rateLimited, byRoute);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to report suppressed access log lines", e);
+        }
+    }
+
+    /**
+     * 输出最后一次汇总并停止后台线程。
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        report();
+    }
+}
@@ -0,0 +1,237 @@
+package xyz.hyrio.common.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 预编译的请求匹配规则，与 {@link xyz.hyrio.common.util.ServletUtils#isUriIn(String, String, String[][])} 的语义相同：
+ * 每条规则是 {@code {请求方法, 正则表达式}}，方法不区分大小写，URI 须完整匹配正则表达式。
+ * <p>
+ * 构造时按请求方法分组，不含元字符的规则（如 {@code /api/login}）和以 {@code .*} 结尾的前缀规则（如 {@code /swagger-ui/.*}）
+ * 放入一棵压缩前缀树，匹配时只按字符遍历，不分配内存；其余规则预编译为 {@link Pattern}，
+ * 并且只在 URI 以其字面前缀开头时才执行。
+ */
+public final class RouteMatcher {
+    public static final RouteMatcher EMPTY = new RouteMatcher(null);
+
+    /**
+     * 压缩前缀树的节点，子节点按边的首字符排序。
+     */
+    private static final class Node {
+        private char[] firstChars;
+        private String[] labels;
+        private Node[] children;
+        /**
+         * 到此节点为止的字面规则。
+         */
+        private boolean exact;
+        /**
+         * 以此节点为前缀、后接 {@code .*} 的规则。
+         */
+        private boolean prefix;
+    }
+
+    /**
+     * 构造前缀树时使用的未压缩节点。
+     */
+    private static final class BuildNode {
+        private final TreeMap<Character, BuildNode> children = new TreeMap<>();
+        private boolean exact;
+        private boolean prefix;
+
+        private void add(String path, boolean isPrefix) {
+            BuildNode node = this;
+            for (int i = 0; i < path.length(); i++) {
+                node = node.children.computeIfAbsent(path.charAt(i), c -> new BuildNode());
+            }
+            if (isPrefix) {
+                node.prefix = true;
+            } else {
+                node.exact = true;
+            }
+        }
+
+        private Node compress() {
+            Node node = new Node();
+            node.exact = exact;
+            node.prefix = prefix;
+            int n = children.size();
+            node.firstChars = new char[n];
+            node.labels = new String[n];
+            node.children = new Node[n];
+            int i = 0;
+            for (Map.Entry<Character, BuildNode> e : children.entrySet()) {
+                StringBuilder label = new StringBuilder().append(e.getKey().charValue());
+                BuildNode child = e.getValue();
+                while (!child.exact && !child.prefix && child.children.size() == 1) {
+                    Map.Entry<Character, BuildNode> only = child.children.firstEntry();
+                    label.append(only.getKey().charValue());
+                    child = only.getValue();
+                }
+                node.firstChars[i] = e.getKey();
+                node.labels[i] = label.toString();
+                node.children[i] = child.compress();
+                i++;
+            }
+            return node;
+        }
+    }
+
+    private record RegexRule(String literalPrefix, Pattern pattern) {
+    }
+
+    private record MethodRoutes(String method, Node root, RegexRule[] regexRules) {
+    }
+
+    private final String[][] rules;
+    private final MethodRoutes[] routes;
+
+    /**
+     * 构造时使用的规则，即 {@code AuthCheckInterceptor} 等的 getter 返回的内容。
+     */
+    public String[][] getRules() {
+        return rules;
+    }
+
+    /**
+     * @param rules 每个元素是 {@code {请求方法, 正则表达式}}，可以为 {@code null}。
+     * @throws IllegalArgumentException 规则格式不正确时。
+     * @throws java.util.regex.PatternSyntaxException 正则表达式有语法错误时。
+     */
+    public RouteMatcher(String[][] rules) {
+        this.rules = rules;
+        Map<String, BuildNode> trees = new LinkedHashMap<>();
+        Map<String, List<RegexRule>> regexes = new LinkedHashMap<>();
+        if (rules != null) {
+            for (String[] rule : rules) {
+                if (rule == null || rule.length < 2 || rule[0] == null || rule[1] == null) {
+                    throw new IllegalArgumentException("each rule must be {method, regex}: " + Arrays.toString(rule));
+                }
+                String method = rule[0].toUpperCase(Locale.ROOT);
+                String regex = rule[1];
+                BuildNode tree = trees.computeIfAbsent(method, m -> new BuildNode());
+                regexes.computeIfAbsent(method, m -> new ArrayList<>());
+                StringBuilder literal = new StringBuilder();
+                int end = parseLiteralPrefix(regex, literal);
+                if (end == regex.length()) {
+                    tree.add(literal.toString(), false);
+                } else if (end == regex.length() - 2 && regex.endsWith(".*")) {
+                    tree.add(literal.toString(), true);
+                } else {
+                    String literalPrefix = regex.indexOf('|') < 0 ? literal.toString() : "";
+                    regexes.get(method).add(new RegexRule(literalPrefix, Pattern.compile(regex)));
+                }
+            }
+        }
+        this.routes = trees.entrySet().stream()
+                .map(e -> new MethodRoutes(e.getKey(), e.getValue().compress(), regexes.get(e.getKey()).toArray(new RegexRule[0])))
+                .toArray(MethodRoutes[]::new);
+    }
+
+    private static boolean isMetaChar(char c) {
+        return "\\.[]{}()*+?^$|".indexOf(c) >= 0;
+    }
+
+    private static boolean isQuantifier(char c) {
+        return c == '*' || c == '+' || c == '?' || c == '{';
+    }
+
+    /**
+     * 解析正则表达式开头的字面部分（{@code \.} 等转义的标点视为字面字符），写入 {@code literal}。
+     *
+     * @return 字面部分之后的位置；整个表达式都是字面字符时为表达式的长度。
+     */
+    private static int parseLiteralPrefix(String regex, StringBuilder literal) {
+        int i = 0;
+        int n = regex.length();
+        while (i < n) {
+            char c = regex.charAt(i);
+            int next;
+            char literalChar;
+            if (c == '\\') {
+                if (i + 1 >= n || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return i;
+                }
+                literalChar = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (isMetaChar(c)) {
+                return i;
+            } else {
+                literalChar = c;
+                next = i + 1;
+            }
+            // 后面跟着量词的字符不一定出现
+            if (next < n && isQuantifier(regex.charAt(next))) {
+                return i;
+            }
+            literal.append(literalChar);
+            i = next;
+        }
+        return n;
+    }
+
+    /**
+     * {@code .} 不匹配的行终止符。
+     */
+    private static boolean hasLineTerminator(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesTree(Node node, String uri) {
+        int i = 0;
+        int n = uri.length();
+        while (true) {
+            if (node.prefix && !hasLineTerminator(uri, i)) {
+                return true;
+            }
+            if (i == n) {
+                return node.exact;
+            }
+            int k = Arrays.binarySearch(node.firstChars, uri.charAt(i));
+            if (k < 0) {
+                return false;
+            }
+            String label = node.labels[k];
+            if (!uri.startsWith(label, i)) {
+                return false;
+            }
+            i += label.length();
+            node = node.children[k];
+        }
+    }
+
+    public boolean matches(String method, String uri) {
+        if (!hasText(method) || !hasText(uri)) {
+            return false;
+        }
+        for (MethodRoutes route : routes) {
+            if (!route.method.equalsIgnoreCase(method)) {
+                continue;
+            }
+            if (matchesTree(route.root, uri)) {
+                return true;
+            }
+            for (RegexRule rule : route.regexRules) {
+                if (uri.startsWith(rule.literalPrefix) && rule.pattern.matcher(uri).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return false;
+    }
+}
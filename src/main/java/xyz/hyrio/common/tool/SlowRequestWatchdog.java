@@ -0,0 +1,181 @@
+package xyz.hyrio.common.tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 慢请求看门狗：后台线程定期检查正在处理的请求，对耗时超过阈值的请求采样处理线程的调用栈，
+ * 请求结束时把相同调用栈合并计数，得到一份简单的耗时分布。
+ * <p>
+ * 每个线程只在第一次处理请求时登记一次，之后 {@link #begin()} 和 {@link #end()} 各只有一次 volatile 写；
+ * 未被采样的请求不加锁，也不分配内存。获取调用栈的开销只发生在慢请求上。
+ *
+ * @see xyz.hyrio.common.interceptor.ShowRequestInterceptor#setSlowRequestWatchdog(SlowRequestWatchdog)
+ */
+public class SlowRequestWatchdog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SlowRequestWatchdog.class);
+
+    /**
+     * 一个线程的状态，在该线程处理的所有请求之间复用。
+     */
+    private static final class InFlight {
+        private final Thread thread;
+        /**
+         * 当前请求的开始时间，0 表示空闲。
+         */
+        private volatile long startNanos;
+        private volatile long requestId;
+        private volatile boolean sampled;
+        /**
+         * 以下字段由 this 保护。样本属于 {@code samplesRequestId} 对应的请求，与当前请求不同的样本会被丢弃。
+         */
+        private final Map<List<StackTraceElement>, Integer> stacks = new HashMap<>();
+        private int sampleCount;
+        private long samplesRequestId;
+
+        private InFlight(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    private final long thresholdNanos;
+    private final int maxFrames;
+    private final int maxStacks;
+    private final Set<InFlight> threads = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<InFlight> current = ThreadLocal.withInitial(this::register);
+    private final ScheduledExecutorService executor;
+
+    public Duration getThreshold() {
+        return Duration.ofNanos(thresholdNanos);
+    }
+
+    /**
+     * @param threshold      开始采样的请求耗时。
+     * @param sampleInterval 采样间隔。
+     * @param maxFrames      每个调用栈保留的栈帧数（从栈顶开始）。
+     * @param maxStacks      报告中列出的调用栈数，按采样次数从多到少。
+     */
+    public SlowRequestWatchdog(Duration threshold, Duration sampleInterval, int maxFrames, int maxStacks) {
+        if (maxFrames <= 0 || maxStacks <= 0) {
+            throw new IllegalArgumentException("maxFrames and maxStacks must be positive");
+        }
+        this.thresholdNanos = threshold.toNanos();
+        this.maxFrames = maxFrames;
+        this.maxStacks = maxStacks;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setName("slow-request-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = sampleInterval.toNanos();
+        executor.scheduleAtFixedRate(this::sample, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private InFlight register() {
+        InFlight inFlight = new InFlight(Thread.currentThread());
+        threads.add(inFlight);
+        return inFlight;
+    }
+
+    /**
+     * 当前线程开始处理一个请求。
+     */
+    public void begin() {
+        InFlight inFlight = current.get();
+        inFlight.requestId++;
+        inFlight.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 当前线程的请求处理结束。
+     *
+     * @return 请求被采样过时返回合并后的调用栈报告，否则返回 {@code null}。
+     */
+    public String end() {
+        InFlight inFlight = current.get();
+        inFlight.startNanos = 0;
+        if (!inFlight.sampled) {
+            return null;
+        }
+        synchronized (inFlight) {
+            inFlight.sampled = false;
+            String report = inFlight.samplesRequestId == inFlight.requestId && inFlight.sampleCount > 0
+                    ? format(inFlight.stacks, inFlight.sampleCount) : null;
+            inFlight.stacks.clear();
+            inFlight.sampleCount = 0;
+            return report;
+        }
+    }
+
+    private void sample() {
+        try {
+            long now = System.nanoTime();
+            for (InFlight inFlight : threads) {
+                if (!inFlight.thread.isAlive()) {
+                    threads.remove(inFlight);
+                    continue;
+                }
+                long start = inFlight.startNanos;
+                if (start == 0 || now - start < thresholdNanos) {
+                    continue;
+                }
+                long requestId = inFlight.requestId;
+                StackTraceElement[] stack = inFlight.thread.getStackTrace();
+                List<StackTraceElement> key = Arrays.asList(Arrays.copyOf(stack, Math.min(stack.length, maxFrames)));
+                synchronized (inFlight) {
+                    // 采样期间请求可能已经结束，或者线程开始了下一个请求
+                    if (inFlight.requestId != requestId || inFlight.startNanos == 0) {
+                        continue;
+                    }
+                    if (inFlight.samplesRequestId != requestId) {
+                        inFlight.stacks.clear();
+                        inFlight.sampleCount = 0;
+                        inFlight.samplesRequestId = requestId;
+                    }
+                    inFlight.stacks.merge(key, 1, Integer::sum);
+                    inFlight.sampleCount++;
+                    inFlight.sampled = true;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to sample slow requests", e);
+        }
+    }
+
+    private String format(Map<List<StackTraceElement>, Integer> stacks, int sampleCount) {
+        List<Map.Entry<List<StackTraceElement>, Integer>> entries = new ArrayList<>(stacks.entrySet());
+        entries.sort(Map.Entry.<List<StackTraceElement>, Integer>comparingByValue().reversed());
+        StringBuilder sb = new StringBuilder();
+        sb.append(sampleCount).append(" stack samples");
+        for (int i = 0; i < Math.min(maxStacks, entries.size()); i++) {
+            Map.Entry<List<StackTraceElement>, Integer> e = entries.get(i);
+            sb.append("\n  ").append(e.getValue()).append('/').append(sampleCount).append(':');
+            for (StackTraceElement frame : e.getKey()) {
+                sb.append("\n    at ").append(frame);
+            }
+        }
+        if (entries.size() > maxStacks) {
+            sb.append("\n  ... ").append(entries.size() - maxStacks).append(" more distinct stacks");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,477 @@
+package xyz.hyrio.common.tool;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * 分段加密大数据流的工具类，内存占用只与分段大小有关，与数据大小无关。
+ * <p>
+ * 数据被切成固定大小的分段，每段单独以 AES-GCM 加密并认证。每个流使用随机盐从主密钥派生出独立的子密钥，
+ * 分段的 nonce 由随机前缀、分段序号和“最后一段”标记组成，因此分段无法被调换、删除或截断。
+ * 由于分段相互独立，可以通过 {@link #decrypt(FileChannel, long, long)} 直接解密任意明文范围，用于响应 HTTP Range 请求。
+ * <p>
+ * 密文格式：
+ * <pre>
+ * header  = version(1) | segmentSize(4) | salt(16) | noncePrefix(7)
+ * segment = AES-GCM(subkey, noncePrefix | index(4) | last(1), aad = header, plaintext) // plaintext + 16 字节认证标签
+ * </pre>
+ * 除最后一段外每段明文都是 {@code segmentSize} 字节，最后一段为 0 到 {@code segmentSize} 字节，空数据也有一个空的最后一段。
+ */
+public class StreamEncryptionTool {
+    private static final byte VERSION = 1;
+    private static final int SALT_SIZE = 16;
+    private static final int NONCE_PREFIX_SIZE = 7;
+    private static final int NONCE_SIZE = NONCE_PREFIX_SIZE + 4 + 1;
+    private static final int TAG_SIZE = 16;
+    private static final int HEADER_SIZE = 1 + 4 + SALT_SIZE + NONCE_PREFIX_SIZE;
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    public static final int MIN_SEGMENT_SIZE = 4 * 1024;
+    public static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final String KDF_ALGORITHM = "HmacSHA256";
+    private static final byte[] KDF_INFO = "hyrio-stream-encryption".getBytes(StandardCharsets.US_ASCII);
+
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final SecretKeySpec masterKey;
+    private final int segmentSize;
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @param keyString Base64 编码的 16、24 或 32 字节主密钥，与 {@link EncryptionTool} 相同。
+     */
+    public StreamEncryptionTool(String keyString) {
+        this(keyString, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param keyString   Base64 编码的 16、24 或 32 字节主密钥，与 {@link EncryptionTool} 相同。
+     * @param segmentSize 每个分段的明文字节数，用于加密；解密时以密文头中记录的值为准。
+     */
+    public StreamEncryptionTool(String keyString, int segmentSize) {
+        byte[] keyBytes = Base64.getDecoder().decode(keyString);
+        if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+            throw new IllegalArgumentException("key must be 16, 24, or 32 bytes");
+        }
+        checkSegmentSize(segmentSize);
+        this.masterKey = new SecretKeySpec(keyBytes, KDF_ALGORITHM);
+        this.segmentSize = segmentSize;
+    }
+
+    private static void checkSegmentSize(int segmentSize) {
+        if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segment size must be between " + MIN_SEGMENT_SIZE + " and " + MAX_SEGMENT_SIZE);
+        }
+    }
+
+    // Sizes
+
+    /**
+     * 计算给定长度的明文加密后的密文长度。
+     */
+    public long ciphertextSize(long plaintextSize) {
+        long segments = plaintextSize == 0 ? 1 : (plaintextSize + segmentSize - 1) / segmentSize;
+        return HEADER_SIZE + plaintextSize + segments * TAG_SIZE;
+    }
+
+    /**
+     * 根据密文头和密文长度计算明文长度，不解密数据。
+     *
+     * @throws IOException 密文头无效或密文长度不可能由加密产生。
+     */
+    public static long plaintextSize(FileChannel channel) throws IOException {
+        byte[] bytes = new byte[HEADER_SIZE];
+        readFully(channel, ByteBuffer.wrap(bytes), 0);
+        return plaintextSize(parseSegmentSize(bytes), channel.size());
+    }
+
+    private static long plaintextSize(int segmentSize, long ciphertextSize) throws IOException {
+        long body = ciphertextSize - HEADER_SIZE;
+        long fullSegments = body / (segmentSize + TAG_SIZE);
+        long remainder = body % (segmentSize + TAG_SIZE);
+        if (body < TAG_SIZE || (remainder != 0 && remainder < TAG_SIZE)) {
+            throw new IOException("invalid ciphertext size: " + ciphertextSize);
+        }
+        return fullSegments * segmentSize + (remainder == 0 ? 0 : remainder - TAG_SIZE);
+    }
+
+    // Header and keys
+
+    private record Header(byte[] bytes, int segmentSize, SecretKeySpec key) {
+        private byte[] nonce(long index, boolean last) throws IOException {
+            if (index > 0xFFFFFFFFL) {
+                throw new IOException("too many segments");
+            }
+            byte[] nonce = new byte[NONCE_SIZE];
+            System.arraycopy(bytes, HEADER_SIZE - NONCE_PREFIX_SIZE, nonce, 0, NONCE_PREFIX_SIZE);
+            nonce[NONCE_PREFIX_SIZE] = (byte) (index >>> 24);
+            nonce[NONCE_PREFIX_SIZE + 1] = (byte) (index >>> 16);
+            nonce[NONCE_PREFIX_SIZE + 2] = (byte) (index >>> 8);
+            nonce[NONCE_PREFIX_SIZE + 3] = (byte) index;
+            nonce[NONCE_SIZE - 1] = (byte) (last ? 1 : 0);
+            return nonce;
+        }
+
+        /**
+         * 加密或解密一个分段，返回输出的字节数。
+         */
+        private int doFinal(Cipher cipher, int mode, long index, boolean last,
+                            byte[] in, int inLength, byte[] out) throws IOException {
+            try {
+                cipher.init(mode, key, new GCMParameterSpec(TAG_SIZE * 8, nonce(index, last)));
+                cipher.updateAAD(bytes);
+                return cipher.doFinal(in, 0, inLength, out, 0);
+            } catch (AEADBadTagException e) {
+                throw new IOException("segment " + index + " failed authentication", e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("failed to process segment " + index, e);
+            }
+        }
+    }
+
+    private Header newHeader() {
+        byte[] bytes = new byte[HEADER_SIZE];
+        bytes[0] = VERSION;
+        bytes[1] = (byte) (segmentSize >>> 24);
+        bytes[2] = (byte) (segmentSize >>> 16);
+        bytes[3] = (byte) (segmentSize >>> 8);
+        bytes[4] = (byte) segmentSize;
+        byte[] random = new byte[SALT_SIZE + NONCE_PREFIX_SIZE];
+        secureRandom.nextBytes(random);
+        System.arraycopy(random, 0, bytes, 5, random.length);
+        return new Header(bytes, segmentSize, deriveKey(bytes));
+    }
+
+    private static int parseSegmentSize(byte[] header) throws IOException {
+        if (header[0] != VERSION) {
+            throw new IOException("unsupported stream encryption version: " + header[0]);
+        }
+        int segmentSize = (header[1] & 0xFF) << 24 | (header[2] & 0xFF) << 16 | (header[3] & 0xFF) << 8 | (header[4] & 0xFF);
+        if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IOException("invalid segment size: " + segmentSize);
+        }
+        return segmentSize;
+    }
+
+    private Header parseHeader(byte[] bytes) throws IOException {
+        return new Header(bytes, parseSegmentSize(bytes), deriveKey(bytes));
+    }
+
+    /**
+     * 子密钥 = HMAC-SHA256(主密钥, salt | info)，截取为主密钥的长度。
+     */
+    private SecretKeySpec deriveKey(byte[] header) {
+        try {
+            Mac mac = Mac.getInstance(KDF_ALGORITHM);
+            mac.init(masterKey);
+            mac.update(header, 5, SALT_SIZE);
+            mac.update(KDF_INFO);
+            return new SecretKeySpec(mac.doFinal(), 0, masterKey.getEncoded().length, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("encryption algorithm not supported", e);
+        }
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(CIPHER_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("encryption algorithm not supported", e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException("unexpected end of ciphertext");
+            }
+            position += n;
+        }
+    }
+
+    // Encrypt
+
+    /**
+     * 返回一个输出流，写入的数据加密后写到 {@code out}。必须关闭返回的流才会写出最后一段，关闭时也会关闭 {@code out}。
+     */
+    public OutputStream encrypt(OutputStream out) throws IOException {
+        Objects.requireNonNull(out);
+        Header header = newHeader();
+        out.write(header.bytes);
+        return new EncryptingOutputStream(out, header);
+    }
+
+    private static class EncryptingOutputStream extends FilterOutputStream {
+        private final Header header;
+        private final Cipher cipher = newCipher();
+        private final byte[] plaintext, ciphertext;
+        private int count;
+        private long index;
+        private boolean closed;
+
+        private EncryptingOutputStream(OutputStream out, Header header) {
+            super(out);
+            this.header = header;
+            this.plaintext = new byte[header.segmentSize];
+            this.ciphertext = new byte[header.segmentSize + TAG_SIZE];
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("stream closed");
+            }
+        }
+
+        /**
+         * 缓冲区满且还有更多数据时才写出，以保证最后一段在关闭时才确定。
+         */
+        private void writeSegment(boolean last) throws IOException {
+            int n = header.doFinal(cipher, Cipher.ENCRYPT_MODE, index++, last, plaintext, count, ciphertext);
+            out.write(ciphertext, 0, n);
+            count = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            if (count == plaintext.length) {
+                writeSegment(false);
+            }
+            plaintext[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            ensureOpen();
+            while (len > 0) {
+                if (count == plaintext.length) {
+                    writeSegment(false);
+                }
+                int n = Math.min(len, plaintext.length - count);
+                System.arraycopy(b, off, plaintext, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try (OutputStream ignored = out) {
+                writeSegment(true);
+                out.flush();
+            } finally {
+                Arrays.fill(plaintext, (byte) 0);
+            }
+        }
+    }
+
+    // Decrypt
+
+    /**
+     * 返回一个输入流，从 {@code in} 读取密文并按段解密。每段在认证通过后才会返回其中的数据；
+     * 密文被篡改或截断时抛出 {@link IOException}。
+     */
+    public InputStream decrypt(InputStream in) throws IOException {
+        byte[] bytes = in.readNBytes(HEADER_SIZE);
+        if (bytes.length < HEADER_SIZE) {
+            throw new EOFException("unexpected end of ciphertext");
+        }
+        return new DecryptingInputStream(in, parseHeader(bytes));
+    }
+
+    /**
+     * 解密文件中指定范围的明文，只读取并解密覆盖该范围的分段。
+     * 读取使用绝对位置，不改变也不依赖 {@code channel} 的当前位置，因此同一个 channel 可以被多个流并发使用。
+     * 关闭返回的流不会关闭 {@code channel}。
+     *
+     * @param offset 明文中的起始位置。
+     * @param length 要读取的明文长度，超过明文末尾的部分被忽略。
+     */
+    public InputStream decrypt(FileChannel channel, long offset, long length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("offset and length must not be negative");
+        }
+        byte[] bytes = new byte[HEADER_SIZE];
+        readFully(channel, ByteBuffer.wrap(bytes), 0);
+        Header header = parseHeader(bytes);
+        long plaintextSize = plaintextSize(header.segmentSize, channel.size());
+        if (offset > plaintextSize) {
+            throw new IllegalArgumentException("offset beyond end of plaintext: " + offset + " > " + plaintextSize);
+        }
+        long end = offset + Math.min(length, plaintextSize - offset);
+        return new RangeDecryptingInputStream(channel, header, plaintextSize, offset, end);
+    }
+
+    /**
+     * 解密文件中从 {@code offset} 开始到末尾的明文。
+     */
+    public InputStream decrypt(FileChannel channel, long offset) throws IOException {
+        return decrypt(channel, offset, Long.MAX_VALUE);
+    }
+
+    /**
+     * 按段解密的输入流的公共部分：子类负责把下一段密文解密到 {@link #plaintext} 中。
+     */
+    private abstract static class SegmentInputStream extends InputStream {
+        final Header header;
+        final Cipher cipher = newCipher();
+        final byte[] plaintext, ciphertext;
+        int position, limit;
+
+        SegmentInputStream(Header header) {
+            this.header = header;
+            this.plaintext = new byte[header.segmentSize];
+            this.ciphertext = new byte[header.segmentSize + TAG_SIZE];
+        }
+
+        /**
+         * 解密下一段，更新 {@link #position} 和 {@link #limit}；没有更多数据时返回 false。
+         */
+        abstract boolean nextSegment() throws IOException;
+
+        private boolean fill() throws IOException {
+            while (position == limit) {
+                if (!nextSegment()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? plaintext[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(plaintext, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+    }
+
+    private static class DecryptingInputStream extends SegmentInputStream {
+        private final InputStream in;
+        private long index;
+        private boolean pending, finished;
+        private byte pendingByte;
+
+        private DecryptingInputStream(InputStream in, Header header) {
+            super(header);
+            this.in = in;
+        }
+
+        /**
+         * 读满一段后再预读一个字节，以确定这一段是否为最后一段。
+         */
+        @Override
+        boolean nextSegment() throws IOException {
+            if (finished) {
+                return false;
+            }
+            int n = 0;
+            if (pending) {
+                ciphertext[n++] = pendingByte;
+                pending = false;
+            }
+            n += in.readNBytes(ciphertext, n, ciphertext.length - n);
+            boolean last;
+            if (n < ciphertext.length) {
+                last = true;
+            } else {
+                int next = in.read();
+                last = next < 0;
+                if (!last) {
+                    pending = true;
+                    pendingByte = (byte) next;
+                }
+            }
+            if (n < TAG_SIZE) {
+                throw new EOFException("unexpected end of ciphertext");
+            }
+            position = 0;
+            limit = header.doFinal(cipher, Cipher.DECRYPT_MODE, index++, last, ciphertext, n, plaintext);
+            finished = last;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static class RangeDecryptingInputStream extends SegmentInputStream {
+        private final FileChannel channel;
+        private final long lastIndex;
+        private final long end;
+        private long index;
+        private int skip;
+
+        private RangeDecryptingInputStream(FileChannel channel, Header header, long plaintextSize, long offset, long end) {
+            super(header);
+            this.channel = channel;
+            this.lastIndex = plaintextSize == 0 ? 0 : (plaintextSize - 1) / header.segmentSize;
+            this.end = end;
+            this.index = offset / header.segmentSize;
+            this.skip = (int) (offset % header.segmentSize);
+        }
+
+        @Override
+        boolean nextSegment() throws IOException {
+            long segmentStart = index * header.segmentSize;
+            if (segmentStart >= end || index > lastIndex) {
+                return false;
+            }
+            boolean last = index == lastIndex;
+            long segmentPosition = HEADER_SIZE + index * (header.segmentSize + TAG_SIZE);
+            int segmentLength = last
+                    ? (int) Math.min(ciphertext.length, channel.size() - segmentPosition)
+                    : ciphertext.length;
+            readFully(channel, ByteBuffer.wrap(ciphertext, 0, segmentLength), segmentPosition);
+            int n = header.doFinal(cipher, Cipher.DECRYPT_MODE, index++, last, ciphertext, segmentLength, plaintext);
+            position = skip;
+            limit = (int) Math.min(n, end - segmentStart);
+            skip = 0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package xyz.hyrio.common.tool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶，以 GCRA（通用信元速率算法）实现：整个状态是一个 long，即“理论到达时间”，每次获取只需一次 CAS。
+ * <p>
+ * 以 {@code permitsPerSecond} 的速率补充令牌，最多积攒 {@code burst} 个。长时间未使用的桶与新建的桶状态相同，
+ * 可以据此清除空闲的桶（见 {@link #isIdle(long)}）。
+ */
+public final class TokenBucket {
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    /**
+     * 理论到达时间（{@link System#nanoTime()}）：按速率发放完已获取的令牌后，桶重新变满的时刻。
+     */
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数。
+     * @param burst            最多积攒的令牌数，即允许的突发量。
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || burst <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.burstNanos = emissionIntervalNanos * burst;
+        // 新建的桶是满的。取一个较早的时刻，调用方在构造之前取得的 nowNanos 也不会晚于它而被误判为需要等待；
+        // 获取时以 max(tat, now) 为起点，早多少都不会多给令牌
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime()) == 0;
+    }
+
+    /**
+     * 尝试获取一个令牌。
+     *
+     * @param nowNanos 当前的 {@link System#nanoTime()}，多个桶一起检查时可以只取一次。
+     * @return 获取成功时返回 0，否则返回需要等待的纳秒数（可用于 {@code Retry-After}）。
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long newTat = Math.max(tat, nowNanos) + emissionIntervalNanos;
+            long waitNanos = newTat - nowNanos - burstNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 桶是否已经满了（与新建的桶没有区别）。
+     */
+    public boolean isIdle(long nowNanos) {
+        return theoreticalArrival.get() - nowNanos <= 0;
+    }
+}
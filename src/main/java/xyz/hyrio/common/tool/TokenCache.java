@@ -0,0 +1,206 @@
+package xyz.hyrio.common.tool;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已验证 token 的缓存，以不含前缀的 token 为键，缓存解析出的用户信息，命中时不再解密和反序列化。
+ * <p>
+ * 条目在创建后超过 {@code timeToLive}，或超过 {@code timeToIdle} 未被访问时过期。
+ * 条目数超过上限时，先清除过期条目，仍然超出则清除最久未访问的条目，直到降到上限的 90%。
+ * 读取不加锁；清理由写入的线程进行，同一时间最多只有一个线程在清理，其他线程不等待。
+ * 在 {@link #put(String, Object, long)} 之前读取 {@link #getInvalidationStamp()}，与之并发的失效不会被写回的旧值覆盖。
+ * <p>
+ * 同一个用户信息对象会返回给同一 token 的所有请求，调用方不应修改它。
+ *
+ * @see TokenTool#TokenTool(com.fasterxml.jackson.databind.ObjectMapper, EncryptionTool, String, TokenCache)
+ */
+public class TokenCache {
+    /**
+     * 最后访问时间的精度，避免每次命中都写共享的缓存行。
+     */
+    private static final long ACCESS_TIME_GRANULARITY_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private static final class Entry {
+        private final Object value;
+        private final long createdNanos;
+        private volatile long lastAccessNanos;
+
+        private Entry(Object value, long now) {
+            this.value = value;
+            this.createdNanos = now;
+            this.lastAccessNanos = now;
+        }
+    }
+
+    private final int maximumSize;
+    private final long timeToLiveNanos, timeToIdleNanos;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    /**
+     * 每次失效时递增。
+     */
+    private final AtomicLong invalidationStamp = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 因过期或超出上限而被清除的条目数，不含 {@link #invalidate(String)} 清除的条目。
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @param maximumSize 最多缓存的 token 数。
+     * @param timeToLive  条目从创建起的最长存活时间。
+     * @param timeToIdle  条目未被访问的最长时间。
+     */
+    public TokenCache(int maximumSize, Duration timeToLive, Duration timeToIdle) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero() || timeToIdle.isNegative() || timeToIdle.isZero()) {
+            throw new IllegalArgumentException("timeToLive and timeToIdle must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.timeToIdleNanos = timeToIdle.toNanos();
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdNanos >= timeToLiveNanos || now - entry.lastAccessNanos >= timeToIdleNanos;
+    }
+
+    /**
+     * 获取缓存的用户信息。
+     *
+     * @return 未缓存、已过期或缓存的对象不是 {@code type} 的实例时返回 {@code null}。
+     */
+    public <T> T get(String token, Class<T> type) {
+        Entry entry = entries.get(token);
+        if (entry != null) {
+            long now = System.nanoTime();
+            if (isExpired(entry, now)) {
+                if (entries.remove(token, entry)) {
+                    evictionCount.increment();
+                }
+            } else if (type.isInstance(entry.value)) {
+                if (now - entry.lastAccessNanos >= ACCESS_TIME_GRANULARITY_NANOS) {
+                    entry.lastAccessNanos = now;
+                }
+                hitCount.increment();
+                return type.cast(entry.value);
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    public void put(String token, Object value) {
+        entries.put(token, new Entry(value, System.nanoTime()));
+        if (entries.size() > maximumSize) {
+            evict();
+        }
+    }
+
+    /**
+     * 在开始解析 token 之前读取，传给 {@link #put(String, Object, long)}。
+     */
+    public long getInvalidationStamp() {
+        return invalidationStamp.get();
+    }
+
+    /**
+     * 缓存解析结果，但自 {@code stamp} 读取以来发生过失效时不缓存：解析期间 token 可能已经失效（如退出登录），
+     * 写回会让它在过期之前继续有效。失效不常发生，不区分是哪个 token。
+     *
+     * @param stamp 开始解析之前 {@link #getInvalidationStamp()} 的值。
+     */
+    public void put(String token, Object value, long stamp) {
+        Entry entry = new Entry(value, System.nanoTime());
+        entries.put(token, entry);
+        // 先写入再检查：失效先递增再删除，两者交错时总有一方删掉这个条目
+        if (invalidationStamp.get() != stamp) {
+            entries.remove(token, entry);
+            return;
+        }
+        if (entries.size() > maximumSize) {
+            evict();
+        }
+    }
+
+    /**
+     * 使 token 的缓存失效，例如用户退出登录或权限变化时。
+     */
+    public void invalidate(String token) {
+        invalidationStamp.incrementAndGet();
+        entries.remove(token);
+    }
+
+    public void invalidateAll() {
+        invalidationStamp.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * 清除过期条目，仍然超出上限时按最后访问时间清除最旧的条目。
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            entries.forEach((token, entry) -> {
+                if (isExpired(entry, now) && entries.remove(token, entry)) {
+                    evictionCount.increment();
+                }
+            });
+            if (entries.size() <= maximumSize) {
+                return;
+            }
+            // 未访问时间最长的 excess 个条目中最短的那个时间，不短于它的条目都被清除
+            long[] ages = new long[entries.size()];
+            int n = 0;
+            for (Entry entry : entries.values()) {
+                if (n == ages.length) {
+                    break;
+                }
+                ages[n++] = now - entry.lastAccessNanos;
+            }
+            int excess = n - (maximumSize - maximumSize / 10);
+            if (excess <= 0) {
+                return;
+            }
+            Arrays.sort(ages, 0, n);
+            long minAge = ages[n - excess];
+            entries.forEach((token, entry) -> {
+                if (now - entry.lastAccessNanos >= minAge && entries.remove(token, entry)) {
+                    evictionCount.increment();
+                }
+            });
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package xyz.hyrio.common.tool;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+
+import java.io.IOException;
+
+/**
+ * Token 中用户信息的序列化方式，在加密之前和解密之后使用。
+ *
+ * @see TokenTool#TokenTool(TokenCodec, EncryptionTool, String, TokenCache)
+ */
+public interface TokenCodec {
+    byte[] encode(Object userInfo) throws JsonProcessingException;
+
+    <T> T decode(byte[] bytes, int length, Class<T> type) throws IOException;
+
+    /**
+     * JSON 格式，与引入 {@link TokenCodec} 之前生成的 token 相同。
+     */
+    static TokenCodec json(ObjectMapper objectMapper) {
+        return new Json(objectMapper);
+    }
+
+    /**
+     * 以版本字节开头的 Smile（二进制 JSON）格式，比 JSON 更短，解析更快。
+     * 不以版本字节开头的数据按 JSON 解析，因此之前生成的 JSON token 仍然有效。
+     * <p>
+     * 需要引入 {@code com.fasterxml.jackson.dataformat:jackson-dataformat-smile}。
+     *
+     * @param objectMapper 复制其配置（模块、特性等），使两种格式的映射规则一致。
+     */
+    static TokenCodec smile(ObjectMapper objectMapper) {
+        return new Smile(objectMapper);
+    }
+
+    final class Json implements TokenCodec {
+        private final ObjectMapper objectMapper;
+
+        private Json(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public byte[] encode(Object userInfo) throws JsonProcessingException {
+            return objectMapper.writeValueAsBytes(userInfo);
+        }
+
+        @Override
+        public <T> T decode(byte[] bytes, int length, Class<T> type) throws IOException {
+            return objectMapper.readValue(bytes, 0, length, type);
+        }
+    }
+
+    final class Smile implements TokenCodec {
+        /**
+         * 格式版本，写在最前面；JSON 文本不可能以这个字节开头。
+         * 省略了 Smile 自身的 4 字节文件头，其中的选项由版本确定：不共享属性名和字符串值（token 中的对象很小，共享反而更慢），二进制数据以 7 位编码。
+         */
+        private static final byte VERSION_1 = 1;
+
+        private final ObjectMapper smileMapper;
+        private final Json fallback;
+
+        private Smile(ObjectMapper objectMapper) {
+            SmileFactory smileFactory = SmileFactory.builder()
+                    .disable(SmileGenerator.Feature.WRITE_HEADER)
+                    .disable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                    .disable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                    .enable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT)
+                    .disable(SmileParser.Feature.REQUIRE_HEADER)
+                    .build();
+            this.smileMapper = objectMapper.copyWith(smileFactory);
+            this.fallback = new Json(objectMapper);
+        }
+
+        @Override
+        public byte[] encode(Object userInfo) throws JsonProcessingException {
+            byte[] smile = smileMapper.writeValueAsBytes(userInfo);
+            byte[] ret = new byte[smile.length + 1];
+            ret[0] = VERSION_1;
+            System.arraycopy(smile, 0, ret, 1, smile.length);
+            return ret;
+        }
+
+        @Override
+        public <T> T decode(byte[] bytes, int length, Class<T> type) throws IOException {
+            if (length > 0 && bytes[0] == VERSION_1) {
+                return smileMapper.readValue(bytes, 1, length - 1, type);
+            }
+            return fallback.decode(bytes, length, type);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package xyz.hyrio.common.tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import xyz.hyrio.common.interceptor.AuthCheckInterceptor;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 在本地内存中判断 token 是否已被吊销，不需要每个请求都访问 Redis。
+ * <p>
+ * 已吊销 token 的指纹（xxHash64）保存在布隆过滤器和精确集合中：绝大多数请求的 token 未被吊销，
+ * 布隆过滤器直接给出否定结果，不加锁也不分配内存；只有布隆过滤器命中时才查精确集合，以排除误判。
+ * 吊销记录保存在共享的 {@link Store} 中，后台线程定期分批拉取其他实例新增的记录。
+ * <p>
+ * 指纹基于 token 最后一个 {@code .} 之后的部分，即 {@link TokenTool.ExpiryPolicy} 过期时间头之后的密文，
+ * 因此吊销一个 token 也同时吊销它续期得到的所有 token（它们的密文相同）；没有过期时间头时基于完整的字符串（含前缀）。
+ * 吊销时应传入与请求中相同形式的 token。
+ *
+ * @see AuthCheckInterceptor#setRevocationChecker(AuthCheckInterceptor.RevocationChecker)
+ */
+public class TokenRevocationChecker implements AuthCheckInterceptor.RevocationChecker, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationChecker.class);
+
+    private static final int SYNC_BATCH_SIZE = 1000;
+
+    /**
+     * 保存吊销记录的共享存储，记录只追加，按序号读取。
+     * <p>
+     * 存储被清空或截断时必须改变代数（generation），否则截断后追加的记录会使旧的序号指向移位后的数据，
+     * 各实例会静默地跳过一部分吊销记录。
+     */
+    public interface Store {
+        void add(long fingerprint);
+
+        /**
+         * 读取从序号 {@code from} 开始的至多 {@code maxCount} 条记录，与读取时的代数一起返回（需要是一致的快照）。
+         *
+         * @return 序号 {@code from} 已不存在时返回 {@code null}，调用方应从 0 开始重新同步。
+         */
+        Batch fetch(long from, int maxCount);
+    }
+
+    /**
+     * @param generation   存储的代数，清空或截断时改变。
+     * @param fingerprints 读取到的记录。
+     */
+    public record Batch(long generation, long[] fingerprints) {
+    }
+
+    /**
+     * 内存中的存储，用于测试或单实例部署。
+     */
+    public static class InMemoryStore implements Store {
+        private final List<Long> fingerprints = new ArrayList<>();
+        private long generation;
+
+        @Override
+        public synchronized void add(long fingerprint) {
+            fingerprints.add(fingerprint);
+        }
+
+        @Override
+        public synchronized Batch fetch(long from, int maxCount) {
+            if (from > fingerprints.size()) {
+                return null;
+            }
+            int end = (int) Math.min(fingerprints.size(), from + maxCount);
+            long[] ret = new long[end - (int) from];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = fingerprints.get((int) from + i);
+            }
+            return new Batch(generation, ret);
+        }
+
+        public synchronized void clear() {
+            fingerprints.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * 以 Redis 列表保存记录，每条记录是指纹的十六进制字符串；代数保存在 {@code <key>:generation} 中。
+     * 截断列表应当使用 {@link #trim(long)}，它在同一个脚本中递增代数；直接执行 LTRIM 或 DEL 时也必须 INCR 代数键。
+     */
+    public static class RedisStore implements Store {
+        /**
+         * 返回 {代数, 列表长度, 记录...}，在一个脚本中读取，三者一致。
+         */
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        private static final RedisScript<List<String>> FETCH_SCRIPT = (RedisScript) new DefaultRedisScript<>("""
+                local items = redis.call('LRANGE', KEYS[1], ARGV[1], ARGV[2])
+                table.insert(items, 1, tostring(redis.call('LLEN', KEYS[1])))
+                table.insert(items, 1, redis.call('GET', KEYS[2]) or '0')
+                return items
+                """, List.class);
+        private static final RedisScript<Long> TRIM_SCRIPT = new DefaultRedisScript<>("""
+                local size = redis.call('LLEN', KEYS[1])
+                local removed = size - tonumber(ARGV[1])
+                if removed <= 0 then
+                    return 0
+                end
+                redis.call('LTRIM', KEYS[1], removed, -1)
+                redis.call('INCR', KEYS[2])
+                return removed
+                """, Long.class);
+
+        private final StringRedisTemplate redisTemplate;
+        private final String key;
+        private final String generationKey;
+
+        public RedisStore(StringRedisTemplate redisTemplate, String key) {
+            this.redisTemplate = redisTemplate;
+            this.key = key;
+            this.generationKey = key + ":generation";
+        }
+
+        @Override
+        public void add(long fingerprint) {
+            redisTemplate.opsForList().rightPush(key, Long.toHexString(fingerprint));
+        }
+
+        @Override
+        public Batch fetch(long from, int maxCount) {
+            List<String> values = redisTemplate.execute(FETCH_SCRIPT, List.of(key, generationKey),
+                    Long.toString(from), Long.toString(from + maxCount - 1));
+            if (values == null || values.size() < 2) {
+                throw new IllegalStateException("unexpected reply from Redis: " + values);
+            }
+            long generation = Long.parseLong(values.get(0));
+            if (from > Long.parseLong(values.get(1))) {
+                return null;
+            }
+            long[] ret = new long[values.size() - 2];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = Long.parseUnsignedLong(values.get(i + 2), 16);
+            }
+            return new Batch(generation, ret);
+        }
+
+        /**
+         * 从列表头部删除记录，只保留最新的 {@code keepLast} 条，并递增代数，各实例在下次同步时重新加载。
+         * 被删除的记录对应的 token 应当都已经过期，否则它们会重新变得有效。
+         *
+         * @return 删除的记录数。
+         */
+        public long trim(long keepLast) {
+            Long removed = redisTemplate.execute(TRIM_SCRIPT, List.of(key, generationKey), Long.toString(keepLast));
+            return removed == null ? 0 : removed;
+        }
+    }
+
+    /**
+     * 只增不减的布隆过滤器，位数组以 CAS 并发设置。
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        private BloomFilter(int expectedInsertions, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.max(1, (m + 63) >>> 6);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = (long) words << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        /**
+         * 以指纹的高低 32 位做双重散列，得到第 i 个位置。
+         */
+        private long index(long fingerprint, int i) {
+            long combined = (fingerprint & 0xFFFFFFFFL) + i * (fingerprint >>> 32);
+            return (combined & Long.MAX_VALUE) % bitCount;
+        }
+
+        private void put(long fingerprint) {
+            for (int i = 0; i < hashCount; i++) {
+                long index = index(fingerprint, i);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current;
+                while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        private boolean mightContain(long fingerprint) {
+            for (int i = 0; i < hashCount; i++) {
+                long index = index(fingerprint, i);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 布隆过滤器、精确集合和同步进度，重新同步时整体替换。
+     */
+    private static final class Snapshot {
+        private final BloomFilter bloomFilter;
+        private final Set<Long> fingerprints = ConcurrentHashMap.newKeySet();
+        private long syncedCount;
+        /**
+         * 已同步记录所属的存储代数，尚未同步时为 {@code null}。
+         */
+        private Long generation;
+
+        private Snapshot(int expectedInsertions, double falsePositiveRate) {
+            this.bloomFilter = new BloomFilter(expectedInsertions, falsePositiveRate);
+        }
+
+        private void add(long fingerprint) {
+            fingerprints.add(fingerprint);
+            bloomFilter.put(fingerprint);
+        }
+    }
+
+    private final Store store;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final ScheduledExecutorService executor;
+    private volatile Snapshot snapshot;
+
+    public int getRevokedCount() {
+        return snapshot.fingerprints.size();
+    }
+
+    /**
+     * @param store              共享的吊销记录存储。
+     * @param syncInterval       从存储拉取新记录的间隔。
+     * @param expectedInsertions 预计的吊销记录数，用于确定布隆过滤器的大小；超出后误判率上升，但结果仍然准确。
+     * @param falsePositiveRate  布隆过滤器的目标误判率，例如 0.001。
+     */
+    public TokenRevocationChecker(Store store, Duration syncInterval, int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedInsertions must be positive and falsePositiveRate in (0, 1)");
+        }
+        this.store = store;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.snapshot = new Snapshot(expectedInsertions, falsePositiveRate);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setName("token-revocation-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sync();
+        long intervalMillis = syncInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::sync, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static long fingerprint(String token) {
+        int separator = token.lastIndexOf('.');
+        return Digester.getXxHash64Value(separator < 0 ? token : token.substring(separator + 1));
+    }
+
+    @Override
+    public boolean isRevoked(String token) {
+        if (token == null) {
+            return false;
+        }
+        long fingerprint = fingerprint(token);
+        Snapshot snapshot = this.snapshot;
+        return snapshot.bloomFilter.mightContain(fingerprint) && snapshot.fingerprints.contains(fingerprint);
+    }
+
+    /**
+     * 吊销 token：立即在本实例生效，并写入共享存储，其他实例在下次同步后生效。
+     *
+     * @param token 与请求中出现的形式相同的完整 token。
+     */
+    public void revoke(String token) {
+        long fingerprint = fingerprint(token);
+        snapshot.add(fingerprint);
+        store.add(fingerprint);
+    }
+
+    /**
+     * 从存储拉取新增的记录；存储被清空或截断（代数改变）时从头重建。同一时间只有同步线程或构造方法调用。
+     */
+    public synchronized void sync() {
+        try {
+            Snapshot current = this.snapshot;
+            long from = current.syncedCount;
+            while (true) {
+                Batch batch = store.fetch(from, SYNC_BATCH_SIZE);
+                if (batch == null || (current.generation != null && current.generation != batch.generation())) {
+                    log.info("Token revocation store was truncated, resyncing from the beginning");
+                    Snapshot rebuilt = new Snapshot(expectedInsertions, falsePositiveRate);
+                    rebuildFrom(rebuilt);
+                    this.snapshot = rebuilt;
+                    return;
+                }
+                current.generation = batch.generation();
+                for (long fingerprint : batch.fingerprints()) {
+                    current.add(fingerprint);
+                }
+                from += batch.fingerprints().length;
+                current.syncedCount = from;
+                if (batch.fingerprints().length < SYNC_BATCH_SIZE) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to sync token revocations, keeping the current list", e);
+        }
+    }
+
+    private void rebuildFrom(Snapshot rebuilt) {
+        long from = 0;
+        Batch batch;
+        do {
+            batch = store.fetch(from, SYNC_BATCH_SIZE);
+            if (batch == null || (rebuilt.generation != null && rebuilt.generation != batch.generation())) {
+                throw new IllegalStateException("token revocation store changed during resync");
+            }
+            rebuilt.generation = batch.generation();
+            for (long fingerprint : batch.fingerprints()) {
+                rebuilt.add(fingerprint);
+            }
+            from += batch.fingerprints().length;
+        } while (batch.fingerprints().length == SYNC_BATCH_SIZE);
+        rebuilt.syncedCount = from;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
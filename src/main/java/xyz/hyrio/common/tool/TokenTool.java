@@ -4,29 +4,291 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import xyz.hyrio.common.exception.request.AuthorizationException;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
 
 import static org.springframework.util.StringUtils.hasText;
+import static xyz.hyrio.common.util.CodecUtils.decodeBase64;
+import static xyz.hyrio.common.util.CodecUtils.encodeBase64;
 
 /**
  * 用于生成token的工具类。
  */
 public class TokenTool {
-    private final ObjectMapper objectMapper;
+    private final TokenCodec tokenCodec;
     private final EncryptionTool encryptionTool;
 
     private final String tokenPrefix;
     private final int tokenPrefixLength;
 
+    private final TokenCache tokenCache;
+    private final ExpiryPolicy expiryPolicy;
+
+    public TokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    public ExpiryPolicy getExpiryPolicy() {
+        return expiryPolicy;
+    }
+
+    /**
+     * Token 的过期策略。
+     * <p>
+     * 启用后 token 的格式为 {@code 头部.密文}，头部是 Base64URL 编码的签发时间、过期时间和 MAC，
+     * MAC 以独立的密钥对时间和密文计算，因此时间无法被单独修改，也无法被移到其他密文上。
+     * 解析 token 时先检查过期时间，再检查 MAC，都通过后才解密和反序列化，
+     * 过期或伪造的 token 不需要解密就会被拒绝。
+     * <p>
+     * 支持滑动续期：剩余有效期短于 {@code renewWindow} 时，{@link #renewIfNeeded(String)} 只重新生成头部，
+     * 不重新加密；续期后的过期时间不会晚于签发时间加 {@code maxLifetime}。
+     */
+    public static final class ExpiryPolicy {
+        private static final byte VERSION = 1;
+        private static final int MAC_LENGTH = 15;
+        /**
+         * version(1) | issuedAt(4) | expiresAt(4) | mac(15)，时间为 Unix 秒。24 字节正好编码为 32 个 Base64 字符，没有填充。
+         */
+        private static final int HEADER_LENGTH = 1 + 4 + 4 + MAC_LENGTH;
+        private static final int HEADER_TEXT_LENGTH = HEADER_LENGTH / 3 * 4;
+        private static final char SEPARATOR = '.';
+        private static final String MAC_ALGORITHM = "HmacSHA256";
+
+        private final SecretKeySpec macKey;
+        private final long ttlSeconds, renewWindowSeconds, maxLifetimeSeconds;
+        private final boolean acceptTokensWithoutExpiry;
+
+        private static final class MacState {
+            private final Mac mac;
+            private final byte[] header = new byte[HEADER_LENGTH];
+            private final byte[] digest = new byte[32];
+            private byte[] text = new byte[256];
+
+            private MacState(SecretKeySpec macKey) {
+                try {
+                    mac = Mac.getInstance(MAC_ALGORITHM);
+                    mac.init(macKey);
+                } catch (GeneralSecurityException e) {
+                    throw new RuntimeException("MAC algorithm not supported", e);
+                }
+            }
+        }
+
+        private final ThreadLocal<MacState> macState;
+
+        public Duration getTtl() {
+            return Duration.ofSeconds(ttlSeconds);
+        }
+
+        public Duration getRenewWindow() {
+            return Duration.ofSeconds(renewWindowSeconds);
+        }
+
+        public Duration getMaxLifetime() {
+            return Duration.ofSeconds(maxLifetimeSeconds);
+        }
+
+        public boolean isAcceptTokensWithoutExpiry() {
+            return acceptTokensWithoutExpiry;
+        }
+
+        /**
+         * @param macKeyString              Base64 编码的 MAC 密钥，至少 16 字节，不应与加密密钥相同。
+         * @param ttl                       新 token 及每次续期的有效期。
+         * @param renewWindow               剩余有效期短于该值时续期，为 0 时不续期。
+         * @param maxLifetime               从签发起的最长有效期，续期不会超过它。
+         * @param acceptTokensWithoutExpiry 是否接受没有过期时间头的旧 token，用于从旧格式迁移。
+         */
+        public ExpiryPolicy(String macKeyString, Duration ttl, Duration renewWindow, Duration maxLifetime,
+                            boolean acceptTokensWithoutExpiry) {
+            byte[] macKeyBytes = Base64.getDecoder().decode(macKeyString);
+            if (macKeyBytes.length < 16) {
+                throw new IllegalArgumentException("MAC key must be at least 16 bytes");
+            }
+            if (ttl.getSeconds() <= 0 || renewWindow.isNegative() || maxLifetime.compareTo(ttl) < 0) {
+                throw new IllegalArgumentException("ttl must be positive, renewWindow not negative, and maxLifetime not less than ttl");
+            }
+            this.macKey = new SecretKeySpec(macKeyBytes, MAC_ALGORITHM);
+            this.ttlSeconds = ttl.getSeconds();
+            this.renewWindowSeconds = renewWindow.getSeconds();
+            this.maxLifetimeSeconds = maxLifetime.getSeconds();
+            this.acceptTokensWithoutExpiry = acceptTokensWithoutExpiry;
+            this.macState = ThreadLocal.withInitial(() -> new MacState(macKey));
+        }
+
+        private static long now() {
+            return System.currentTimeMillis() / 1000;
+        }
+
+        private static boolean hasHeader(String token) {
+            return token.length() > HEADER_TEXT_LENGTH && token.charAt(HEADER_TEXT_LENGTH) == SEPARATOR;
+        }
+
+        private static int getInt(byte[] bytes, int offset) {
+            return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                   | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+        }
+
+        private static void putInt(byte[] bytes, int offset, long value) {
+            bytes[offset] = (byte) (value >>> 24);
+            bytes[offset + 1] = (byte) (value >>> 16);
+            bytes[offset + 2] = (byte) (value >>> 8);
+            bytes[offset + 3] = (byte) value;
+        }
+
+        /**
+         * 计算 MAC 写入 {@code state.digest}，覆盖头部中 MAC 之前的部分和密文的 ASCII 字节。
+         */
+        private static void computeMac(MacState state, String token, int ciphertextStart) {
+            int length = token.length() - ciphertextStart;
+            if (state.text.length < length) {
+                state.text = new byte[Math.max(length, state.text.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                state.text[i] = (byte) token.charAt(ciphertextStart + i);
+            }
+            state.mac.update(state.header, 0, HEADER_LENGTH - MAC_LENGTH);
+            state.mac.update(state.text, 0, length);
+            try {
+                state.mac.doFinal(state.digest, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private String buildToken(MacState state, long issuedAt, long expiresAt, String token, int ciphertextStart) {
+            state.header[0] = VERSION;
+            putInt(state.header, 1, issuedAt);
+            putInt(state.header, 5, expiresAt);
+            computeMac(state, token, ciphertextStart);
+            System.arraycopy(state.digest, 0, state.header, HEADER_LENGTH - MAC_LENGTH, MAC_LENGTH);
+            byte[] text = new byte[HEADER_TEXT_LENGTH + 1 + token.length() - ciphertextStart];
+            encodeBase64(state.header, 0, HEADER_LENGTH, text, 0, true);
+            text[HEADER_TEXT_LENGTH] = SEPARATOR;
+            for (int i = ciphertextStart, p = HEADER_TEXT_LENGTH + 1; i < token.length(); i++, p++) {
+                text[p] = (byte) token.charAt(i);
+            }
+            return new String(text, StandardCharsets.ISO_8859_1);
+        }
+
+        private String addHeader(String ciphertext) {
+            long now = now();
+            return buildToken(macState.get(), now, now + ttlSeconds, ciphertext, 0);
+        }
+
+        /**
+         * 解码头部到 {@code state.header} 并检查版本和过期时间，不检查 MAC。
+         *
+         * @return 错误信息，通过时为 {@code null}。
+         */
+        private static String checkExpiry(MacState state, String token, long now) {
+            try {
+                decodeBase64(token, 0, HEADER_TEXT_LENGTH, state.header, 0);
+            } catch (IllegalArgumentException e) {
+                return "malformed expiry header";
+            }
+            if (state.header[0] != VERSION) {
+                return "unsupported expiry header";
+            }
+            if (Integer.toUnsignedLong(getInt(state.header, 5)) <= now) {
+                return "expired";
+            }
+            return null;
+        }
+
+        /**
+         * 检查 {@code state.header} 中的 MAC，以常数时间比较。
+         */
+        private static boolean checkMac(MacState state, String token) {
+            computeMac(state, token, HEADER_TEXT_LENGTH + 1);
+            int diff = 0;
+            for (int i = 0; i < MAC_LENGTH; i++) {
+                diff |= state.header[HEADER_LENGTH - MAC_LENGTH + i] ^ state.digest[i];
+            }
+            return diff == 0;
+        }
+
+        /**
+         * 如果 token 有效且剩余有效期短于 {@code renewWindow}，返回延长了过期时间的新 token，密文不变；否则返回 {@code null}。
+         * 没有过期时间头的旧 token 不会被续期。
+         *
+         * @param tokenWithoutPrefix 不含前缀的 token。
+         */
+        public String renewIfNeeded(String tokenWithoutPrefix) {
+            if (renewWindowSeconds == 0 || !hasHeader(tokenWithoutPrefix)) {
+                return null;
+            }
+            MacState state = macState.get();
+            long now = now();
+            if (checkExpiry(state, tokenWithoutPrefix, now) != null || !checkMac(state, tokenWithoutPrefix)) {
+                return null;
+            }
+            long issuedAt = Integer.toUnsignedLong(getInt(state.header, 1));
+            long expiresAt = Integer.toUnsignedLong(getInt(state.header, 5));
+            long renewedExpiresAt = Math.min(now + ttlSeconds, issuedAt + maxLifetimeSeconds);
+            if (expiresAt - now >= renewWindowSeconds || renewedExpiresAt <= expiresAt) {
+                return null;
+            }
+            return buildToken(state, issuedAt, renewedExpiresAt, tokenWithoutPrefix, HEADER_TEXT_LENGTH + 1);
+        }
+    }
+
     public TokenTool(
             ObjectMapper objectMapper,
             EncryptionTool encryptionTool,
             String tokenPrefix
     ) {
-        this.objectMapper = objectMapper;
+        this(objectMapper, encryptionTool, tokenPrefix, null);
+    }
+
+    /**
+     * @param tokenCache 已验证 token 的缓存，{@link #parse(String, Class)} 命中时不再解密和反序列化；为 {@code null} 时不缓存。
+     */
+    public TokenTool(
+            ObjectMapper objectMapper,
+            EncryptionTool encryptionTool,
+            String tokenPrefix,
+            TokenCache tokenCache
+    ) {
+        this(TokenCodec.json(objectMapper), encryptionTool, tokenPrefix, tokenCache);
+    }
+
+    /**
+     * @param tokenCodec 用户信息的序列化方式，例如更紧凑的 {@link TokenCodec#smile(ObjectMapper)}。
+     * @param tokenCache 已验证 token 的缓存，为 {@code null} 时不缓存。
+     */
+    public TokenTool(
+            TokenCodec tokenCodec,
+            EncryptionTool encryptionTool,
+            String tokenPrefix,
+            TokenCache tokenCache
+    ) {
+        this(tokenCodec, encryptionTool, tokenPrefix, tokenCache, null);
+    }
+
+    /**
+     * @param tokenCodec   用户信息的序列化方式。
+     * @param tokenCache   已验证 token 的缓存，为 {@code null} 时不缓存。
+     * @param expiryPolicy 设置后生成的 token 带有过期时间头，见 {@link ExpiryPolicy}；为 {@code null} 时拒绝带有过期时间头的 token。
+     */
+    public TokenTool(
+            TokenCodec tokenCodec,
+            EncryptionTool encryptionTool,
+            String tokenPrefix,
+            TokenCache tokenCache,
+            ExpiryPolicy expiryPolicy
+    ) {
+        this.tokenCodec = tokenCodec;
         this.encryptionTool = encryptionTool;
         this.tokenPrefix = tokenPrefix;
         this.tokenPrefixLength = tokenPrefix.length();
+        this.tokenCache = tokenCache;
+        this.expiryPolicy = expiryPolicy;
     }
 
     /**
@@ -36,7 +298,11 @@ public class TokenTool {
      * @return 生成的token（不含前缀）。
      */
     public <UserInfoType> String generate(UserInfoType userInfo) throws JsonProcessingException {
-        return encryptionTool.encryptToString(objectMapper.writeValueAsString(userInfo));
+        if (expiryPolicy == null) {
+            return encryptionTool.encryptToString(tokenCodec.encode(userInfo));
+        }
+        // The header is Base64URL, keep the whole token URL-safe
+        return expiryPolicy.addHeader(encryptionTool.encryptToUrlString(tokenCodec.encode(userInfo)));
     }
 
     public String addPrefix(String token) {
@@ -57,11 +323,67 @@ public class TokenTool {
         return token.substring(tokenPrefixLength);
     }
 
+    /**
+     * 解析 token。设置了 {@link ExpiryPolicy} 时，依次检查过期时间、缓存和 MAC，最后才解密；
+     * 未设置时带有过期时间头的 token 无法验证 MAC，直接拒绝。
+     */
     public <UserInfoType> UserInfoType parse(String tokenWithoutPrefix, Class<UserInfoType> userInfoClass) {
+        boolean hasHeader = ExpiryPolicy.hasHeader(tokenWithoutPrefix);
+        ExpiryPolicy.MacState macState = null;
+        if (expiryPolicy == null) {
+            if (hasHeader) {
+                throw new AuthorizationException(getInvalidTokenExceptionMessage("unexpected expiry header"));
+            }
+        } else {
+            if (hasHeader) {
+                macState = expiryPolicy.macState.get();
+                String error = ExpiryPolicy.checkExpiry(macState, tokenWithoutPrefix, ExpiryPolicy.now());
+                if (error != null) {
+                    throw new AuthorizationException(getInvalidTokenExceptionMessage(error));
+                }
+            } else if (!expiryPolicy.acceptTokensWithoutExpiry) {
+                throw new AuthorizationException(getInvalidTokenExceptionMessage("no expiry header"));
+            }
+        }
+        long invalidationStamp = 0;
+        if (tokenCache != null) {
+            invalidationStamp = tokenCache.getInvalidationStamp();
+            UserInfoType cached = tokenCache.get(tokenWithoutPrefix, userInfoClass);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (macState != null && !ExpiryPolicy.checkMac(macState, tokenWithoutPrefix)) {
+            throw new AuthorizationException(getInvalidTokenExceptionMessage("bad signature"));
+        }
+        UserInfoType userInfo;
         try {
-            return objectMapper.readValue(encryptionTool.decryptToBytes(tokenWithoutPrefix), userInfoClass);
+            String ciphertext = hasHeader ? tokenWithoutPrefix.substring(ExpiryPolicy.HEADER_TEXT_LENGTH + 1) : tokenWithoutPrefix;
+            userInfo = encryptionTool.decryptFromString(ciphertext,
+                    (plaintext, length) -> tokenCodec.decode(plaintext, length, userInfoClass));
         } catch (IOException e) {
             throw new AuthorizationException(getInvalidTokenExceptionMessage("unable to deserialize"), e);
         }
+        if (tokenCache != null && userInfo != null) {
+            tokenCache.put(tokenWithoutPrefix, userInfo, invalidationStamp);
+        }
+        return userInfo;
+    }
+
+    /**
+     * 如果设置了 {@link ExpiryPolicy} 且 token 需要续期，返回续期后的 token（不含前缀），否则返回 {@code null}。
+     * 可以在验证 token 之后调用，把新 token 放在响应头中返回给客户端。
+     */
+    public String renewIfNeeded(String tokenWithoutPrefix) {
+        return expiryPolicy == null ? null : expiryPolicy.renewIfNeeded(tokenWithoutPrefix);
+    }
+
+    /**
+     * 使 token 的缓存失效，例如用户退出登录时；未配置缓存时什么也不做。
+     */
+    public void invalidate(String tokenWithoutPrefix) {
+        if (tokenCache != null) {
+            tokenCache.invalidate(tokenWithoutPrefix);
+        }
     }
 }
@@ -0,0 +1,315 @@
+package xyz.hyrio.common.tool;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 分块树形散列（Merkle 树）计算器：文件按固定大小分块，各块的散列值在 ForkJoin 线程池中并行计算，再两两合并为根散列值。
+ * <p>
+ * 计算结果 {@link Tree} 保存了每个块的散列值，可以序列化保存；文件被追加或部分改写后，
+ * 通过 {@link #update(Tree, Path, long, long)} 只重新计算发生变化的块。
+ * <p>
+ * 叶子节点为 {@code H(0x00 || chunk)}，中间节点为 {@code H(0x01 || left || right)}，
+ * 某一层节点数为奇数时最后一个节点直接提升到上一层。
+ *
+ * @see Digester
+ */
+public class TreeDigester {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private final Digester.Algorithm algorithm;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    public Digester.Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public TreeDigester(Digester.Algorithm algorithm, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.algorithm = algorithm;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    public TreeDigester(Digester.Algorithm algorithm, int chunkSize) {
+        this(algorithm, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    public TreeDigester() {
+        this(Digester.Algorithm.SHA256, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 树形散列的计算结果，不可变。
+     */
+    public static final class Tree {
+        private static final int MAGIC = 0x48545245; // "HTRE"
+        private static final byte VERSION = 1;
+
+        private final Digester.Algorithm algorithm;
+        private final int chunkSize;
+        private final long fileSize;
+        private final byte[][] chunkDigests;
+        private final byte[] root;
+
+        private Tree(Digester.Algorithm algorithm, int chunkSize, long fileSize, byte[][] chunkDigests) {
+            this.algorithm = algorithm;
+            this.chunkSize = chunkSize;
+            this.fileSize = fileSize;
+            this.chunkDigests = chunkDigests;
+            this.root = computeRoot(algorithm, chunkDigests);
+        }
+
+        public Digester.Algorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public int getChunkCount() {
+            return chunkDigests.length;
+        }
+
+        public byte[] getChunkDigest(int index) {
+            return chunkDigests[index].clone();
+        }
+
+        public byte[] getRoot() {
+            return root.clone();
+        }
+
+        public String getRootHex() {
+            char[] hex = new char[root.length * 2];
+            Digester.encodeHex(root, 0, root.length, hex, 0, true);
+            return new String(hex);
+        }
+
+        public void writeTo(OutputStream outputStream) throws IOException {
+            DataOutputStream out = new DataOutputStream(outputStream);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(algorithm.name());
+            out.writeInt(chunkSize);
+            out.writeLong(fileSize);
+            out.writeInt(chunkDigests.length);
+            for (byte[] chunkDigest : chunkDigests) {
+                out.write(chunkDigest);
+            }
+            out.flush();
+        }
+
+        public static Tree readFrom(InputStream inputStream) throws IOException {
+            DataInputStream in = new DataInputStream(inputStream);
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("not a tree digest");
+            }
+            Digester.Algorithm algorithm;
+            try {
+                algorithm = Digester.Algorithm.valueOf(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("unknown algorithm in tree digest", e);
+            }
+            int chunkSize = in.readInt();
+            long fileSize = in.readLong();
+            int chunkCount = in.readInt();
+            if (chunkSize <= 0 || fileSize < 0 || chunkCount != chunkCount(fileSize, chunkSize)) {
+                throw new IOException("corrupted tree digest");
+            }
+            int digestLength = Digester.getDigestLength(algorithm);
+            byte[][] chunkDigests = new byte[chunkCount][digestLength];
+            for (byte[] chunkDigest : chunkDigests) {
+                in.readFully(chunkDigest);
+            }
+            return new Tree(algorithm, chunkSize, fileSize, chunkDigests);
+        }
+
+        @Override
+        public String toString() {
+            return "Tree{" +
+                   "algorithm=" + algorithm +
+                   ", chunkSize=" + chunkSize +
+                   ", fileSize=" + fileSize +
+                   ", chunkCount=" + chunkDigests.length +
+                   ", root=" + getRootHex() +
+                   '}';
+        }
+    }
+
+    private static int chunkCount(long fileSize, int chunkSize) {
+        long count = fileSize == 0 ? 1 : (fileSize + chunkSize - 1) / chunkSize;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many chunks, use a larger chunk size");
+        }
+        return (int) count;
+    }
+
+    private static byte[] computeRoot(Digester.Algorithm algorithm, byte[][] chunkDigests) {
+        byte[][] level = chunkDigests;
+        while (level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < parent.length; i++) {
+                int left = i * 2;
+                parent[i] = left + 1 < level.length
+                        ? new Digester(algorithm).update(NODE_PREFIX).update(level[left]).update(level[left + 1]).getDigest(algorithm)
+                        : level[left];
+            }
+            level = parent;
+        }
+        return level[0];
+    }
+
+    /**
+     * 并行计算若干个块的散列值，每个任务处理一个块。
+     */
+    private class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long fileSize;
+        private final int[] chunkIndexes;
+        private final int from, to;
+        private final byte[][] chunkDigests;
+
+        private ChunkTask(FileChannel channel, long fileSize, int[] chunkIndexes, int from, int to, byte[][] chunkDigests) {
+            this.channel = channel;
+            this.fileSize = fileSize;
+            this.chunkIndexes = chunkIndexes;
+            this.from = from;
+            this.to = to;
+            this.chunkDigests = chunkDigests;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, fileSize, chunkIndexes, from, mid, chunkDigests),
+                        new ChunkTask(channel, fileSize, chunkIndexes, mid, to, chunkDigests));
+                return;
+            }
+            int index = chunkIndexes[from];
+            long position = (long) index * chunkSize;
+            long length = Math.min(chunkSize, fileSize - position);
+            Digester digester = new Digester(algorithm).update(LEAF_PREFIX);
+            if (length > 0) {
+                try {
+                    digester.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            chunkDigests[index] = digester.getDigest(algorithm);
+        }
+    }
+
+    private void digestChunks(FileChannel channel, long fileSize, int[] chunkIndexes, byte[][] chunkDigests) throws IOException {
+        if (chunkIndexes.length == 0) {
+            return;
+        }
+        try {
+            pool.invoke(new ChunkTask(channel, fileSize, chunkIndexes, 0, chunkIndexes.length, chunkDigests));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static int[] range(int fromInclusive, int toExclusive) {
+        int[] ret = new int[Math.max(0, toExclusive - fromInclusive)];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = fromInclusive + i;
+        }
+        return ret;
+    }
+
+    /**
+     * 计算整个文件的树形散列。
+     */
+    public Tree digest(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            int chunkCount = chunkCount(fileSize, chunkSize);
+            byte[][] chunkDigests = new byte[chunkCount][];
+            digestChunks(channel, fileSize, range(0, chunkCount), chunkDigests);
+            return new Tree(algorithm, chunkSize, fileSize, chunkDigests);
+        }
+    }
+
+    /**
+     * 文件被追加或截断后，只重新计算受文件大小变化影响的块。
+     *
+     * @see #update(Tree, Path, long, long)
+     */
+    public Tree update(Tree previous, Path file) throws IOException {
+        return update(previous, file, 0, 0);
+    }
+
+    /**
+     * 在上次的结果上增量计算：只重新计算与 {@code [changedOffset, changedOffset + changedLength)} 重叠的块，
+     * 以及受文件大小变化影响的块（原来的最后一个块和新增的块）。
+     *
+     * @param previous      上次的计算结果，其算法和块大小必须与当前计算器一致。
+     * @param changedOffset 被改写的起始位置。
+     * @param changedLength 被改写的长度，为 0 时表示没有改写（只检查文件大小的变化）。
+     */
+    public Tree update(Tree previous, Path file, long changedOffset, long changedLength) throws IOException {
+        if (previous.algorithm != algorithm || previous.chunkSize != chunkSize) {
+            throw new IllegalArgumentException("previous tree was built with a different algorithm or chunk size");
+        }
+        if (changedOffset < 0 || changedLength < 0) {
+            throw new IllegalArgumentException("changedOffset and changedLength must not be negative");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            int chunkCount = chunkCount(fileSize, chunkSize);
+            byte[][] chunkDigests = Arrays.copyOf(previous.chunkDigests, chunkCount);
+
+            boolean[] dirty = new boolean[chunkCount];
+            if (fileSize != previous.fileSize) {
+                int firstAffected = (int) (Math.min(fileSize, previous.fileSize) / chunkSize);
+                Arrays.fill(dirty, Math.min(firstAffected, chunkCount), chunkCount, true);
+            }
+            if (changedLength > 0 && changedOffset < fileSize) {
+                int first = (int) (changedOffset / chunkSize);
+                int last = (int) Math.min((changedOffset + changedLength - 1) / chunkSize, chunkCount - 1);
+                Arrays.fill(dirty, first, last + 1, true);
+            }
+
+            int dirtyCount = 0;
+            for (boolean d : dirty) {
+                if (d) {
+                    dirtyCount++;
+                }
+            }
+            if (dirtyCount == 0) {
+                return fileSize == previous.fileSize ? previous : new Tree(algorithm, chunkSize, fileSize, chunkDigests);
+            }
+            int[] chunkIndexes = new int[dirtyCount];
+            for (int i = 0, j = 0; i < chunkCount; i++) {
+                if (dirty[i]) {
+                    chunkIndexes[j++] = i;
+                }
+            }
+            digestChunks(channel, fileSize, chunkIndexes, chunkDigests);
+            return new Tree(algorithm, chunkSize, fileSize, chunkDigests);
+        }
+    }
+}
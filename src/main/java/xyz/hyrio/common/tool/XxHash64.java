@@ -0,0 +1,171 @@
+package xyz.hyrio.common.tool;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 流式的 xxHash64（种子为 0）实现，用于去重键、缓存键等不需要密码学强度的场景。
+ * 直接缓冲区按小端序原地读取，不会复制到堆上。
+ *
+ * @see Digester.Algorithm#XXHASH64
+ */
+final class XxHash64 {
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_LENGTH = 32;
+
+    private static final VarHandle LONG_ARRAY = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_ARRAY = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_BUFFER = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] stripe = new byte[STRIPE_LENGTH];
+    private int stripeLength;
+    private long totalLength;
+    private long v1, v2, v3, v4;
+
+    XxHash64() {
+        reset();
+    }
+
+    void reset() {
+        v1 = PRIME64_1 + PRIME64_2;
+        v2 = PRIME64_2;
+        v3 = 0;
+        v4 = -PRIME64_1;
+        stripeLength = 0;
+        totalLength = 0;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+
+    private void consumeStripe(long l1, long l2, long l3, long l4) {
+        v1 = round(v1, l1);
+        v2 = round(v2, l2);
+        v3 = round(v3, l3);
+        v4 = round(v4, l4);
+    }
+
+    void update(byte b) {
+        totalLength++;
+        stripe[stripeLength++] = b;
+        if (stripeLength == STRIPE_LENGTH) {
+            consumeBufferedStripe();
+        }
+    }
+
+    private void consumeBufferedStripe() {
+        consumeStripe((long) LONG_ARRAY.get(stripe, 0), (long) LONG_ARRAY.get(stripe, 8),
+                (long) LONG_ARRAY.get(stripe, 16), (long) LONG_ARRAY.get(stripe, 24));
+        stripeLength = 0;
+    }
+
+    /**
+     * 先补齐上次剩余的半个条带，返回补齐时消耗的字节数。
+     */
+    private int fillStripe(byte[] bytes, int offset, int len) {
+        if (stripeLength == 0) {
+            return 0;
+        }
+        int n = Math.min(len, STRIPE_LENGTH - stripeLength);
+        System.arraycopy(bytes, offset, stripe, stripeLength, n);
+        stripeLength += n;
+        if (stripeLength == STRIPE_LENGTH) {
+            consumeBufferedStripe();
+        }
+        return n;
+    }
+
+    void update(byte[] bytes, int offset, int len) {
+        totalLength += len;
+        int consumed = fillStripe(bytes, offset, len);
+        offset += consumed;
+        len -= consumed;
+        int end = offset + len;
+        for (; offset <= end - STRIPE_LENGTH; offset += STRIPE_LENGTH) {
+            consumeStripe((long) LONG_ARRAY.get(bytes, offset), (long) LONG_ARRAY.get(bytes, offset + 8),
+                    (long) LONG_ARRAY.get(bytes, offset + 16), (long) LONG_ARRAY.get(bytes, offset + 24));
+        }
+        if (offset < end) {
+            System.arraycopy(bytes, offset, stripe, stripeLength, end - offset);
+            stripeLength += end - offset;
+        }
+    }
+
+    /**
+     * 消费 {@code buffer} 中 position 到 limit 之间的数据，结束后 position 等于 limit。
+     */
+    void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        int offset = buffer.position();
+        int end = buffer.limit();
+        totalLength += end - offset;
+        while (stripeLength != 0 && offset < end) {
+            stripe[stripeLength++] = buffer.get(offset++);
+            if (stripeLength == STRIPE_LENGTH) {
+                consumeBufferedStripe();
+            }
+        }
+        for (; offset <= end - STRIPE_LENGTH; offset += STRIPE_LENGTH) {
+            consumeStripe((long) LONG_BUFFER.get(buffer, offset), (long) LONG_BUFFER.get(buffer, offset + 8),
+                    (long) LONG_BUFFER.get(buffer, offset + 16), (long) LONG_BUFFER.get(buffer, offset + 24));
+        }
+        buffer.get(offset, stripe, stripeLength, end - offset);
+        stripeLength += end - offset;
+        buffer.position(end);
+    }
+
+    long getValue() {
+        long h;
+        if (totalLength >= STRIPE_LENGTH) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = PRIME64_5;
+        }
+        h += totalLength;
+
+        int offset = 0;
+        for (; offset + Long.BYTES <= stripeLength; offset += Long.BYTES) {
+            h ^= round(0, (long) LONG_ARRAY.get(stripe, offset));
+            h = Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+        }
+        if (offset + Integer.BYTES <= stripeLength) {
+            h ^= ((int) INT_ARRAY.get(stripe, offset) & 0xFFFFFFFFL) * PRIME64_1;
+            h = Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+            offset += Integer.BYTES;
+        }
+        for (; offset < stripeLength; offset++) {
+            h ^= (stripe[offset] & 0xFFL) * PRIME64_5;
+            h = Long.rotateLeft(h, 11) * PRIME64_1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME64_2;
+        h ^= h >>> 29;
+        h *= PRIME64_3;
+        h ^= h >>> 32;
+        return h;
+    }
+}
@@ -0,0 +1,188 @@
+package xyz.hyrio.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Allocation-free encoding helpers for hot paths that write into caller-owned buffers.
+ */
+public final class CodecUtils {
+    private CodecUtils() {
+    }
+
+    /**
+     * The maximum number of UTF-8 bytes a single UTF-16 char can be encoded to.
+     */
+    public static final int MAX_UTF8_BYTES_PER_CHAR = 3;
+
+    /**
+     * Encode the string as UTF-8 into {@code dst}, which must have at least
+     * {@code str.length() * MAX_UTF8_BYTES_PER_CHAR} bytes available from {@code offset}.
+     * Unpaired surrogates are replaced with {@code '?'}, the same as {@code str.getBytes(UTF_8)}.
+     *
+     * @return The number of bytes written.
+     */
+    public static int encodeUtf8(String str, byte[] dst, int offset) {
+        int p = offset;
+        int len = str.length();
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                dst[p++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[p++] = (byte) (0xC0 | (c >> 6));
+                dst[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                    dst[p++] = (byte) (0xF0 | (codePoint >> 18));
+                    dst[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    dst[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    dst[p++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    dst[p++] = '?';
+                }
+            } else {
+                dst[p++] = (byte) (0xE0 | (c >> 12));
+                dst[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return p - offset;
+    }
+
+    // Base64
+
+    private static final byte[] BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64_URL_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64_DECODE_TABLE = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_DECODE_TABLE, (byte) -1);
+        for (int i = 0; i < 64; i++) {
+            BASE64_DECODE_TABLE[BASE64_ALPHABET[i]] = (byte) i;
+            BASE64_DECODE_TABLE[BASE64_URL_ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    /**
+     * The length of the padded Base64 encoding of {@code length} bytes.
+     */
+    public static int base64EncodedLength(int length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    /**
+     * An upper bound of the number of bytes {@code length} Base64 chars decode to.
+     */
+    public static int base64DecodedMaxLength(int length) {
+        return (int) ((long) length * 3 / 4);
+    }
+
+    /**
+     * The number of bytes {@code src} decodes to, assuming it is valid Base64 with or without padding.
+     */
+    public static int base64DecodedLength(CharSequence src) {
+        int length = src.length();
+        if (length > 0 && src.charAt(length - 1) == '=') {
+            length--;
+            if (length > 0 && src.charAt(length - 1) == '=') {
+                length--;
+            }
+        }
+        return (int) ((long) length * 3 / 4);
+    }
+
+    /**
+     * The 6-bit value of a Base64 char of either alphabet, or -1 if it is not one.
+     */
+    public static int base64Value(char c) {
+        return c < 128 ? BASE64_DECODE_TABLE[c] : -1;
+    }
+
+    /**
+     * Encode {@code src[offset, offset + length)} as padded Base64 into {@code dst}, as ASCII bytes.
+     * The output is the same as {@link java.util.Base64#getEncoder()} or {@link java.util.Base64#getUrlEncoder()}.
+     *
+     * @return The number of bytes written, {@link #base64EncodedLength(int)}.
+     */
+    public static int encodeBase64(byte[] src, int offset, int length, byte[] dst, int dstOffset, boolean url) {
+        byte[] alphabet = url ? BASE64_URL_ALPHABET : BASE64_ALPHABET;
+        int end = offset + length;
+        int p = dstOffset;
+        int i = offset;
+        for (; i + 3 <= end; i += 3) {
+            int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+            dst[p++] = alphabet[bits >>> 18];
+            dst[p++] = alphabet[(bits >>> 12) & 0x3F];
+            dst[p++] = alphabet[(bits >>> 6) & 0x3F];
+            dst[p++] = alphabet[bits & 0x3F];
+        }
+        if (i < end) {
+            int bits = (src[i] & 0xFF) << 16 | (i + 1 < end ? (src[i + 1] & 0xFF) << 8 : 0);
+            dst[p++] = alphabet[bits >>> 18];
+            dst[p++] = alphabet[(bits >>> 12) & 0x3F];
+            dst[p++] = i + 1 < end ? alphabet[(bits >>> 6) & 0x3F] : (byte) '=';
+            dst[p++] = '=';
+        }
+        return p - dstOffset;
+    }
+
+    /**
+     * Decode Base64 into {@code dst}, which must have at least {@link #base64DecodedMaxLength(int)} bytes
+     * available from {@code dstOffset}. Both the standard and the URL-safe alphabet are accepted,
+     * with or without padding.
+     *
+     * @return The number of bytes written.
+     * @throws IllegalArgumentException If {@code src} is not valid Base64.
+     */
+    public static int decodeBase64(CharSequence src, byte[] dst, int dstOffset) {
+        return decodeBase64(src, 0, src.length(), dst, dstOffset);
+    }
+
+    /**
+     * Decode {@code src[start, end)}, see {@link #decodeBase64(CharSequence, byte[], int)}.
+     */
+    public static int decodeBase64(CharSequence src, int start, int end, byte[] dst, int dstOffset) {
+        int length = end - start;
+        if (length > 0 && src.charAt(start + length - 1) == '=') {
+            length--;
+            if (length > 0 && src.charAt(start + length - 1) == '=') {
+                length--;
+            }
+            if ((end - start) % 4 != 0) {
+                throw new IllegalArgumentException("invalid Base64 padding");
+            }
+        }
+        if (length % 4 == 1) {
+            throw new IllegalArgumentException("invalid Base64 length: " + (end - start));
+        }
+        int p = dstOffset;
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            char c = src.charAt(start + i);
+            int value = base64Value(c);
+            if (value < 0) {
+                throw new IllegalArgumentException("illegal Base64 character at " + i + ": " + c);
+            }
+            bits = bits << 6 | value;
+            if (++count == 4) {
+                dst[p++] = (byte) (bits >>> 16);
+                dst[p++] = (byte) (bits >>> 8);
+                dst[p++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            dst[p++] = (byte) (bits >>> 4);
+        } else if (count == 3) {
+            dst[p++] = (byte) (bits >>> 10);
+            dst[p++] = (byte) (bits >>> 2);
+        }
+        return p - dstOffset;
+    }
+}
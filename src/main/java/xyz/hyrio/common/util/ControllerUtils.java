@@ -4,11 +4,14 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import xyz.hyrio.common.tool.Digester;
+import xyz.hyrio.common.tool.DigestingOutputStream;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -25,9 +28,17 @@ public final class ControllerUtils {
     private ControllerUtils() {
     }
 
+    private static OutputStream getOutputStream(HttpServletResponse response, Digester digester) throws IOException {
+        return digester == null ? response.getOutputStream() : new DigestingOutputStream(response.getOutputStream(), digester);
+    }
+
     private static void transferInToOut(InputStream in, HttpServletResponse response) throws IOException {
+        transferInToOut(in, response, null);
+    }
+
+    private static void transferInToOut(InputStream in, HttpServletResponse response, Digester digester) throws IOException {
         try (BufferedInputStream bis = new BufferedInputStream(in);
-             BufferedOutputStream bos = new BufferedOutputStream(response.getOutputStream())) {
+             BufferedOutputStream bos = new BufferedOutputStream(getOutputStream(response, digester))) {
             bis.transferTo(bos);
             bos.flush();
         }
@@ -53,13 +64,22 @@ public final class ControllerUtils {
     }
 
     public static void downloadFile(Path srcPath, HttpServletResponse response, String filename) throws IOException {
+        downloadFile(srcPath, response, filename, null);
+    }
+
+    /**
+     * Download a file or a folder (as a zip file), feeding the bytes actually sent to the given digester.
+     *
+     * @param digester The digester to update with the response body, or {@code null} to skip digesting.
+     */
+    public static void downloadFile(Path srcPath, HttpServletResponse response, String filename, Digester digester) throws IOException {
         if (!Files.exists(srcPath)) {
             throw new IOException("srcPath not found: " + srcPath);
         }
         requireHasText(filename, "filename is required");
         if (Files.isDirectory(srcPath)) {
             setFileDownloadHeaders(srcPath.getFileName() + ".zip", -1, response);
-            try (ZipOutputStream zos = new ZipOutputStream(response.getOutputStream())) {
+            try (ZipOutputStream zos = new ZipOutputStream(getOutputStream(response, digester))) {
                 Files.walkFileTree(srcPath, new SimpleFileVisitor<>() {
                     @Override
                     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
@@ -80,7 +100,7 @@ public final class ControllerUtils {
             }
         } else if (Files.isRegularFile(srcPath)) {
             try (BufferedInputStream in = new BufferedInputStream(Files.newInputStream(srcPath))) {
-                downloadFile(filename, in, response, Files.size(srcPath));
+                downloadFile(filename, in, response, Files.size(srcPath), digester);
             }
         } else {
             throw new IOException("file type not supported: " + srcPath);
@@ -92,7 +112,11 @@ public final class ControllerUtils {
     }
 
     public static void downloadFile(String filename, InputStream in, HttpServletResponse response, long fileSize) throws IOException {
+        downloadFile(filename, in, response, fileSize, null);
+    }
+
+    public static void downloadFile(String filename, InputStream in, HttpServletResponse response, long fileSize, Digester digester) throws IOException {
         setFileDownloadHeaders(filename, fileSize, response);
-        transferInToOut(in, response);
+        transferInToOut(in, response, digester);
     }
 }
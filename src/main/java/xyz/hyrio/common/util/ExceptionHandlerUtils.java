@@ -6,6 +6,7 @@ import org.springframework.http.ResponseEntity;
 import xyz.hyrio.common.exception.internal.InternalException;
 import xyz.hyrio.common.exception.request.*;
 import xyz.hyrio.common.pojo.vo.CommonVo;
+import xyz.hyrio.common.tool.RequestContext;
 
 import static org.springframework.util.StringUtils.hasText;
 
@@ -13,9 +14,6 @@ public final class ExceptionHandlerUtils {
     private ExceptionHandlerUtils() {
     }
 
-    private static final ThreadLocal<Exception> exceptionTl = new ThreadLocal<>();
-    private static final ThreadLocal<HttpStatus> statusTl = new ThreadLocal<>();
-
     public static HttpStatus getCodeByException(Exception e) {
         if (e instanceof UiDeprecatedException) return HttpStatus.UPGRADE_REQUIRED;
         if (e instanceof RateLimitException) return HttpStatus.TOO_MANY_REQUESTS;
@@ -33,22 +31,28 @@ public final class ExceptionHandlerUtils {
     }
 
     public static ResponseEntity<?> getResponseEntity(HttpStatus status, Exception e) {
-        exceptionTl.set(e);
-        statusTl.set(status);
+        RequestContext context = RequestContext.current();
+        if (context != null) { // off the request path (e.g. async or scheduled code) there is nothing to report to
+            context.setException(status, e);
+        }
         String message = e.getMessage();
         return ResponseEntity.status(status).body(CommonVo.of(status.value(), hasText(message) ? message : e.getClass().getName()));
     }
 
     public static Exception getException() {
-        return exceptionTl.get();
+        RequestContext context = RequestContext.current();
+        return context == null ? null : context.getException();
     }
 
     public static HttpStatus getStatus() {
-        return statusTl.get();
+        RequestContext context = RequestContext.current();
+        return context == null ? null : context.getStatus();
     }
 
     public static void clearStates() {
-        exceptionTl.remove();
-        statusTl.remove();
+        RequestContext context = RequestContext.current();
+        if (context != null) {
+            context.clearException();
+        }
     }
 }
@@ -17,6 +17,8 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static java.nio.file.Files.*;
@@ -29,17 +31,28 @@ public final class ServletUtils {
     }
 
     public static String getIpAddressFromRequest(HttpServletRequest request) {
-        String ip = request.getHeader("x-forwarded-for"); // apache2 / WAF
+        return getIpAddress(request::getHeader, request::getRemoteAddr);
+    }
+
+    /**
+     * Resolves the client IP from proxy headers, in order of precedence, falling back to the peer address;
+     * shared by the servlet and reactive stacks so both honour the same headers.
+     *
+     * @param headerLookup  returns the first value of a request header, or {@code null}.
+     * @param remoteAddress returns the address of the connected peer, called only when no header is set.
+     */
+    public static String getIpAddress(Function<String, String> headerLookup, Supplier<String> remoteAddress) {
+        String ip = headerLookup.apply("x-forwarded-for"); // apache2 / WAF
         if (hasText(ip)) {
             return ip;
         }
 
-        ip = request.getHeader("X-Real-IP"); // nginx
+        ip = headerLookup.apply("X-Real-IP"); // nginx
         if (hasText(ip)) {
             return ip;
         }
 
-        return request.getRemoteAddr(); // other
+        return remoteAddress.get(); // other
     }
 
     public record RequestUriAndQueryString(String uri, String query) {
@@ -53,6 +66,9 @@ public final class ServletUtils {
         return new RequestUriAndQueryString(request.getRequestURI(), request.getQueryString());
     }
 
+    /**
+     * Compiles every regex on each call; for rules checked on every request use {@link xyz.hyrio.common.tool.RouteMatcher}.
+     */
     public static boolean isUriIn(String method, String uri, String[][] uris) {
         return hasText(method) && hasText(uri) && !isEmpty(uris) && Arrays.stream(uris).anyMatch(u -> method.equalsIgnoreCase(u[0]) && uri.matches(u[1]));
     }